@@ -0,0 +1,60 @@
+// Writes .gz and .br copies of the text assets in build/ next to the originals,
+// the server picks one by Accept-Encoding. Run after every build (npm "postbuild").
+const fs = require('fs');
+const path = require('path');
+const zlib = require('zlib');
+
+const BUILD_DIR = path.join(__dirname, '..', 'build');
+const EXTENSIONS = ['.html', '.js', '.css', '.json', '.svg', '.txt', '.map', '.ico'];
+const MIN_SIZE = 1024; // smaller files gain nothing once headers are counted
+
+function listFiles(dir) {
+    return fs.readdirSync(dir, { withFileTypes: true }).flatMap(entry => {
+        const file = path.join(dir, entry.name);
+        return entry.isDirectory() ? listFiles(file) : [file];
+    });
+}
+
+function formatSize(bytes) {
+    return `${(bytes / 1024).toFixed(1)} KB`;
+}
+
+const total = { original: 0, gzip: 0, brotli: 0 };
+const rows = [];
+
+for (const file of listFiles(BUILD_DIR)) {
+    if (!EXTENSIONS.includes(path.extname(file))) {
+        continue;
+    }
+    const content = fs.readFileSync(file);
+    if (content.length < MIN_SIZE) {
+        continue;
+    }
+    const gzip = zlib.gzipSync(content, { level: zlib.constants.Z_BEST_COMPRESSION });
+    const brotli = zlib.brotliCompressSync(content, {
+        params: {
+            [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+            [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length,
+        },
+    });
+    // a variant that isn't smaller would only waste bandwidth
+    if (gzip.length < content.length) {
+        fs.writeFileSync(`${file}.gz`, gzip);
+    }
+    if (brotli.length < content.length) {
+        fs.writeFileSync(`${file}.br`, brotli);
+    }
+
+    total.original += content.length;
+    total.gzip += Math.min(gzip.length, content.length);
+    total.brotli += Math.min(brotli.length, content.length);
+    rows.push([path.relative(BUILD_DIR, file), content.length, gzip.length, brotli.length]);
+}
+
+console.log('Precompressed assets:');
+for (const [name, original, gzip, brotli] of rows) {
+    console.log(`  ${name}: ${formatSize(original)} -> gzip ${formatSize(gzip)}, br ${formatSize(brotli)}`);
+}
+const saved = (compressed) => `${(100 * (1 - compressed / total.original)).toFixed(1)}%`;
+console.log(`Total: ${formatSize(total.original)} -> gzip ${formatSize(total.gzip)} (-${saved(total.gzip)}),`
+    + ` br ${formatSize(total.brotli)} (-${saved(total.brotli)})`);
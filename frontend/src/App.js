@@ -7,6 +7,7 @@ import Header from './components/Header';
 import Home from './components/Home';
 import Loading from './components/Loading';
 import API from './API';
+import { isServerRendered } from './initialData';
 
 const Login = lazy(() => import('./components/Login'));
 const SignUp = lazy(() => import('./components/SignUp'));
@@ -18,16 +19,18 @@ export const UserContext = createContext(null);
 function App() {
 
   const [user, setUser] = useState(null);
-  const [isLoading, setIsLoading] = useState(true);
+  const [isLoading, setIsLoading] = useState(!isServerRendered);
   const [cookies] = useCookies(['XSRF-TOKEN']);
 
   const httpClient = axios.create({
     headers: { 'X-XSRF-TOKEN': cookies['XSRF-TOKEN'] }
   });
 
-  // get user authentication
-  const getUser = () => {
-    setIsLoading(true);
+  // get user authentication, a page rendered by the server stays visible meanwhile
+  const getUser = (showLoading = true) => {
+    if (showLoading) {
+      setIsLoading(true);
+    }
     httpClient.get(API.USER)
       .then(response => setUser(response.data || null))
       .catch(error => console.error(error))
@@ -53,7 +56,7 @@ function App() {
   };
 
   useEffect(() => {
-    getUser();
+    getUser(!isServerRendered);
   }, []);
 
   if (isLoading) {
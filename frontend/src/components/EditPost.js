@@ -14,6 +14,7 @@ function EditPost() {
     const [isLoading, setIsLoading] = useState(true);
 
     const post = useRef(null);
+    const eTag = useRef(null); // version of the post the edit is based on
 
     useEffect(() => {
 
@@ -40,6 +41,7 @@ function EditPost() {
                     httpClient.get(`${API.POST}/${id}`)
                         .then(response => {
                             post.current = response.data;
+                            eTag.current = response.headers.etag;
                             if (user.id !== post.current.user.id) {
                                 // user isn't the author
                                 navigate('/');
@@ -70,7 +72,7 @@ function EditPost() {
         <div className="container">
             <div className="row justify-content-center">
                 <div className="col-md-8">
-                    <PostForm id={id} post={post} />
+                    <PostForm id={id} post={post} eTag={eTag.current} />
                 </div>
             </div>
         </div>
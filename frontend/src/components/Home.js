@@ -4,26 +4,35 @@ import API from '../API';
 import PostList from './PostList';
 import TagList from './TagList';
 import Loading from './Loading';
+import { takeInitialData } from '../initialData';
 
 function Home() {
 
     const { httpClient } = useContext(UserContext);
-    const [posts, setPosts] = useState(null);
-    const [tags, setTags] = useState(null);
+    const [initialData] = useState(() => takeInitialData('/'));
+    const [posts, setPosts] = useState(initialData && initialData.posts);
+    const [tags, setTags] = useState(initialData && initialData.tags);
     const [search, setSearch] = useState("");
     const [page, setPage] = useState(1);
     const [tagId, setTagId] = useState(0);
     const [selectedPost, setSelectedPost] = useState(null);
-    const [isTagsLoading, setIsTagssLoading] = useState(true);
+    const [isTagsLoading, setIsTagssLoading] = useState(!initialData);
 
     const offcanvasCloseBtn = useRef(null);
+    const skipPostsFetch = useRef(initialData != null); // first page came with the html
 
     useEffect(() => {
-        getTags();
+        if (!initialData) {
+            getTags();
+        }
     }, []);
 
     // get post list
     const getPosts = useCallback(() => {
+        if (skipPostsFetch.current) {
+            skipPostsFetch.current = false;
+            return;
+        }
         setPosts(null);
         httpClient.get(API.POST, { params: { search, tagId, page } })
             .then((response) => setPosts(response.data))
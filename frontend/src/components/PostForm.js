@@ -5,13 +5,14 @@ import { UserContext } from "../App"
 import API from '../API';
 
 
-function PostForm({ id, post }) {
+function PostForm({ id, post, eTag }) {
 
     const { httpClient } = useContext(UserContext);
 
     const { register, setError, formState: { errors }, handleSubmit } = useForm({ defaultValues: post });
     const navigate = useNavigate();
     const [isUploading, setIsUploading] = useState(false);
+    const [isConflict, setIsConflict] = useState(false);
     const postForm = useRef(null);
 
     const onPost = (data) => {
@@ -36,12 +37,20 @@ function PostForm({ id, post }) {
         const formData = new FormData(postForm.current);
         setIsUploading(true);
         if (id) {
-            // update
-            httpClient.put(`${API.POST}/${id}`, formData)
+            // update, only if nobody saved the post since it was loaded
+            httpClient.put(`${API.POST}/${id}`, formData, eTag ? { headers: { 'If-Match': eTag } } : undefined)
                 .then(() => {
                     finishedUpload();
                 })
-                .catch(error => console.error(error));
+                .catch(error => {
+                    if (error.response && error.response.status === 412) {
+                        // post changed since it was loaded
+                        setIsConflict(true);
+                        setIsUploading(false);
+                        return;
+                    }
+                    console.error(error);
+                });
         } else {
             // insert
             httpClient.post(API.POST, formData)
@@ -106,6 +115,11 @@ function PostForm({ id, post }) {
                             Separate tags with spaces. (ex: python java programming_language)
                         </div>
                     </div>
+                    {isConflict && (
+                        <div className="alert alert-warning" role="alert">
+                            This post was changed since you opened it. Reload the page to edit the latest version.
+                        </div>
+                    )}
                     {isUploading ? (
                         <button className="btn btn-primary" type="button" disabled>
                             <span className="spinner-border spinner-border-sm" aria-hidden="true"></span>
@@ -25,7 +25,7 @@ function PostList({ getPosts, posts, setSelectedPost }) {
                         <div className="row g-0 position-relative">
                             <div className="col-lg-4">
                                 {post.image && (
-                                    <img className="d-block mx-auto img-fluid object-fit-scale" src={`${API.FILES}/${post.image}`} alt="thumbnail" style={{ width: "200px", height: "250px" }} />
+                                    <img className="d-block mx-auto img-fluid object-fit-scale" src={`${API.FILES}/${post.image}?width=400`} alt="thumbnail" style={{ width: "200px", height: "250px" }} />
                                 )}
                             </div>
                             <div className="col-lg-8">
@@ -36,11 +36,12 @@ function PostList({ getPosts, posts, setSelectedPost }) {
                                         </Link>
                                     </h3>
                                     <p className="card-text text-truncate">
-                                        {post.content}
+                                        {post.excerpt}
                                     </p>
                                     <p className="card-text"><small className="text-body-secondary">Author: {post.user.username}</small></p>
                                     <p className="card-text"><small className="text-body-secondary">Posted at: {formatDate(post.createdAt)}</small></p>
                                     <p className="card-text"><small className="text-body-secondary">Last update: {formatDate(post.updatedAt)}</small></p>
+                                    <p className="card-text"><small className="text-body-secondary">{post.readTime} min read</small></p>
                                     <p className="card-text text-truncate"><small className="text-body-secondary">{post.tags.length === 0 ? '#' : post.tags.map(tag => `#${tag.name}`).join(' ')}</small></p>
                                 </div>
                             </div>
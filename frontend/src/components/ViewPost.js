@@ -3,6 +3,7 @@ import { useState, useContext, useEffect, useRef } from 'react';
 import { UserContext } from "../App";
 import Loading from './Loading';
 import API from '../API';
+import { takeInitialData } from '../initialData';
 
 function formatDate(dateString) {
     const date = new Date(dateString);
@@ -15,11 +16,17 @@ function ViewPost() {
     const navigate = useNavigate();
     const { id } = useParams();
 
-    const [isLoading, setIsLoading] = useState(true);
-    const post = useRef(null);
+    const [initialData] = useState(() => takeInitialData(`/viewPost/${id}`));
+    const [isLoading, setIsLoading] = useState(!initialData);
+    const post = useRef(initialData && initialData.post);
 
     useEffect(() => {
 
+        if (initialData) {
+            // came with the html
+            return;
+        }
+
         setIsLoading(true);
 
         httpClient.get(`${API.POST}/${id}`)
@@ -0,0 +1,15 @@
+// data of the page rendered by the server, see PageSnapshotService
+let initialData = window.__INITIAL_DATA__ || null;
+
+export const isServerRendered = initialData != null;
+
+// get the server data for the first render of a route, later renders load their own
+export function takeInitialData(path) {
+    if (!initialData || initialData.path !== path) {
+        return null;
+    }
+    const data = initialData;
+    // kept for the rest of this render, strict mode runs initializers twice
+    setTimeout(() => initialData = null);
+    return data;
+}
@@ -0,0 +1,143 @@
+package com.project.blog.benchmark;
+
+import com.project.blog.BlogApplication;
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.mapper.TagMapper;
+import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.Post;
+import com.project.blog.pojo.Tag;
+import com.project.blog.pojo.UserBean;
+import com.project.blog.service.PostSearchService;
+import com.project.blog.service.PostService;
+import com.project.blog.service.PostTagIndexService;
+import com.project.blog.service.TagService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.*;
+
+/**
+ * the application started against an in-memory database seeded with a synthetic dataset,
+ * the dataset is set with jmh parameters, e.g. -p posts=10000
+ */
+@State(Scope.Benchmark)
+public class BlogState {
+
+    private static final String[] SYLLABLES = {"ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "ze", "pa", "qu", "dr"};
+
+    @Param({"1000"})
+    public int posts;
+
+    @Param({"100"})
+    public int tags;
+
+    @Param({"300"})
+    public int contentWords;
+
+    @Param({"3"})
+    public int tagsPerPost;
+
+    public ConfigurableApplicationContext context;
+    public List<Integer> postIds;
+    public List<Integer> tagIds;
+    public List<String> vocabulary;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BlogApplication.class)
+                .profiles("benchmark")
+                .run();
+        seed(new Random(42));
+        context.getBean(PostService.class).backfillSummaries();
+        // the runner indexed the empty database, load the seeded one
+        context.getBean(PostSearchService.class).init();
+        context.getBean(PostTagIndexService.class).init();
+        context.getBean(TagService.class).refresh();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    private void seed(Random random) {
+        UserMapper userMapper = context.getBean(UserMapper.class);
+        PostMapper postMapper = context.getBean(PostMapper.class);
+        TagMapper tagMapper = context.getBean(TagMapper.class);
+
+        vocabulary = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            vocabulary.add(word(random));
+        }
+
+        List<UserBean> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            UserBean user = new UserBean();
+            user.setUsername("user" + i);
+            user.setPassword("");
+            userMapper.insert(user);
+            users.add(user);
+        }
+
+        List<Tag> tagList = new ArrayList<>();
+        for (int i = 0; i < tags; i++) {
+            Tag tag = new Tag();
+            tag.setName("tag" + i);
+            tagList.add(tag);
+        }
+        tagMapper.insertAll(tagList);
+        tagIds = new ArrayList<>();
+        for (Tag tag : tagList) {
+            tagIds.add(tag.getId());
+        }
+
+        postIds = new ArrayList<>();
+        Date now = new Date();
+        for (int i = 0; i < posts; i++) {
+            Post post = new Post();
+            post.setTitle(words(random, 6));
+            post.setContent(words(random, contentWords));
+            post.setUser(users.get(random.nextInt(users.size())));
+            post.setCreatedAt(now);
+            post.setUpdatedAt(now);
+            postMapper.insert(post);
+            postIds.add(post.getId());
+
+            Set<Integer> postTagIds = new HashSet<>();
+            while (postTagIds.size() < Math.min(tagsPerPost, tags)) {
+                postTagIds.add(tagIds.get(random.nextInt(tagIds.size())));
+            }
+            if (!postTagIds.isEmpty()) {
+                postMapper.insertPostTags(post.getId(), postTagIds);
+            }
+        }
+    }
+
+    private String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            // skewed towards the start of the vocabulary like natural text
+            int index = (int) (vocabulary.size() * Math.pow(random.nextDouble(), 3));
+            text.append(vocabulary.get(index));
+        }
+        return text.toString();
+    }
+
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 2 + random.nextInt(3);
+        for (int i = 0; i < length; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.project.blog.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.pagehelper.PageInfo;
+import com.project.blog.pojo.PostSummary;
+import com.project.blog.service.PostService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * serialize a page of posts with the object mapper spring mvc uses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+    @Param({"10", "50"})
+    public int pageSize;
+
+    private ObjectMapper objectMapper;
+    private PageInfo<PostSummary> page;
+
+    @Setup(Level.Trial)
+    public void setUp(BlogState blog) {
+        objectMapper = blog.getBean(ObjectMapper.class);
+        page = blog.getBean(PostService.class).getPosts("", 0, 1, pageSize);
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+}
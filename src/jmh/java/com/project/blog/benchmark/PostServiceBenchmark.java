@@ -0,0 +1,73 @@
+package com.project.blog.benchmark;
+
+import com.github.pagehelper.PageHelper;
+import com.github.pagehelper.PageInfo;
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.pojo.Post;
+import com.project.blog.pojo.PostSummary;
+import com.project.blog.service.PostService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PostServiceBenchmark {
+
+    private PostService postService;
+    private PostMapper postMapper;
+    private BlogState blog;
+
+    @Setup(Level.Trial)
+    public void setUp(BlogState blog) {
+        this.blog = blog;
+        this.postService = blog.getBean(PostService.class);
+        this.postMapper = blog.getBean(PostMapper.class);
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPosts() {
+        return postService.getPosts("", 0, 1, 10);
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPostsBySearch() {
+        return postService.getPosts(randomItem(blog.vocabulary.subList(0, 100)), 0, 1, 10);
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPostsBySearchLike() {
+        // the LIKE scan and count the search index replaces, without the authors and tags getPostsBySearch also loads
+        PageHelper.startPage(1, 10);
+        return new PageInfo<>(postMapper.findAll(randomItem(blog.vocabulary.subList(0, 100)), 0));
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPostsByTag() {
+        return postService.getPosts("", randomItem(blog.tagIds), 1, 10);
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPostsBySearchAndTag() {
+        return postService.getPosts(randomItem(blog.vocabulary.subList(0, 100)), randomItem(blog.tagIds), 1, 10);
+    }
+
+    @Benchmark
+    public Post getPostById() {
+        return postService.getPostById(randomItem(blog.postIds));
+    }
+
+    @Benchmark
+    public Post getPostByIdUncached() {
+        postService.evictCachedPosts();
+        return postService.getPostById(randomItem(blog.postIds));
+    }
+
+    private static <T> T randomItem(List<T> items) {
+        return items.get(ThreadLocalRandom.current().nextInt(items.size()));
+    }
+
+}
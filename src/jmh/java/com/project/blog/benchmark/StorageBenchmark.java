@@ -0,0 +1,63 @@
+package com.project.blog.benchmark;
+
+import com.project.blog.service.StorageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class StorageBenchmark {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @Param({"64", "1024"})
+    public int sizeKb;
+
+    private StorageService storageService;
+    private MockMultipartFile image;
+    private String storedName;
+    private final List<String> written = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp(BlogState blog) {
+        storageService = blog.getBean(StorageService.class);
+        byte[] content = new byte[sizeKb * 1024];
+        new Random(42).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        image = new MockMultipartFile("image", "image.png", "image/png", content);
+        storedName = storageService.store(image);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteWritten() {
+        for (String name : written) {
+            storageService.delete(name);
+        }
+        written.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storageService.delete(storedName);
+    }
+
+    @Benchmark
+    public String store() {
+        String name = storageService.store(image);
+        written.add(name);
+        return name;
+    }
+
+    @Benchmark
+    public Resource loadAsResource() {
+        return storageService.loadAsResource(storedName);
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.project.blog.benchmark;
+
+import com.github.pagehelper.PageHelper;
+import com.github.pagehelper.PageInfo;
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.pojo.PostSummary;
+import com.project.blog.service.PostService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * tag filtering through the in-memory tag index against the post_tag join and count it replaces,
+ * meant for a large dataset, e.g. -p posts=100000 -p tags=5000 -p contentWords=50
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class TagFilterBenchmark {
+
+    private PostService postService;
+    private PostMapper postMapper;
+    private BlogState blog;
+
+    @Setup(Level.Trial)
+    public void setUp(BlogState blog) {
+        this.blog = blog;
+        this.postService = blog.getBean(PostService.class);
+        this.postMapper = blog.getBean(PostMapper.class);
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPostsByTag() {
+        return postService.getPosts("", randomItem(blog.tagIds), 1, 10);
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPostsByTagJoin() {
+        // only the paged query and count, without the authors and tags getPostsByTag also loads
+        PageHelper.startPage(1, 10);
+        return new PageInfo<>(postMapper.findAll("", randomItem(blog.tagIds)));
+    }
+
+    @Benchmark
+    public PageInfo<PostSummary> getPostsBySearchAndTag() {
+        return postService.getPosts(randomItem(blog.vocabulary.subList(0, 100)), randomItem(blog.tagIds), 1, 10);
+    }
+
+    private static <T> T randomItem(List<T> items) {
+        return items.get(ThreadLocalRandom.current().nextInt(items.size()));
+    }
+
+}
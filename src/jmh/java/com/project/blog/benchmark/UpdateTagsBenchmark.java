@@ -0,0 +1,49 @@
+package com.project.blog.benchmark;
+
+import com.project.blog.service.PostService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * update a post whose tags alternate between two sets overlapping by half, so every call adds and removes tags
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class UpdateTagsBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int tagCount;
+
+    private PostService postService;
+    private int postId;
+    private final String[] tagSets = new String[2];
+    private final MultipartFile noImage = new MockMultipartFile("image", new byte[0]);
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setUp(BlogState blog) {
+        postService = blog.getBean(PostService.class);
+        postId = blog.postIds.get(0);
+        tagSets[0] = tagNames(0);
+        tagSets[1] = tagNames(Math.max(1, tagCount / 2));
+    }
+
+    @Benchmark
+    public boolean updateTags() {
+        String tags = tagSets[invocation++ & 1];
+        return postService.updatePost(postId, PostService.ANY_VERSION, "benchmark", "benchmark", noImage, tags);
+    }
+
+    private String tagNames(int from) {
+        StringBuilder tags = new StringBuilder();
+        for (int i = from; i < from + tagCount; i++) {
+            tags.append("bench").append(i).append(' ');
+        }
+        return tags.toString();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.project.blog.benchmark;
+
+import com.project.blog.service.StorageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * memory used to store an upload, meant to be run with the gc profiler, e.g. -prof gc.
+ * gc.alloc.rate.norm is the number of bytes allocated per upload: for store it stays near the copy buffer
+ * whatever the file size, storeFromBytes reads the whole upload into an array first like the code it replaced
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class UploadMemoryBenchmark {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    @Param({"64", "1024", "5120"})
+    public int sizeKb;
+
+    private StorageService storageService;
+    private MockMultipartFile image;
+    private Path bytesDirectory;
+    private final List<String> written = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp(BlogState blog) throws IOException {
+        storageService = blog.getBean(StorageService.class);
+        byte[] content = new byte[sizeKb * 1024];
+        new Random(42).nextBytes(content);
+        System.arraycopy(PNG_SIGNATURE, 0, content, 0, PNG_SIGNATURE.length);
+        // the mock hands out streams over this array, so reading it allocates nothing per upload
+        image = new MockMultipartFile("image", "image.png", "image/png", content);
+        bytesDirectory = Files.createTempDirectory("upload-benchmark");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteWritten() throws IOException {
+        for (String name : written) {
+            storageService.delete(name);
+        }
+        written.clear();
+        try (var files = Files.list(bytesDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(bytesDirectory);
+    }
+
+    @Benchmark
+    public String store() {
+        String name = storageService.store(image);
+        written.add(name);
+        return name;
+    }
+
+    @Benchmark
+    public String storeFromBytes() throws Exception {
+        byte[] content = image.getInputStream().readAllBytes();
+        Path file = Files.createTempFile(bytesDirectory, "upload", ".png");
+        Files.write(file, content);
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+}
@@ -1,12 +1,17 @@
 package com.project.blog;
 
+import com.project.blog.service.PostSearchService;
+import com.project.blog.service.PostService;
+import com.project.blog.service.PostTagIndexService;
 import com.project.blog.service.StorageService;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BlogApplication {
 
     public static void main(String[] args) {
@@ -14,9 +19,13 @@ public class BlogApplication {
     }
 
     @Bean
-    CommandLineRunner init(StorageService storageService) {
+    CommandLineRunner init(StorageService storageService, PostSearchService postSearchService,
+                           PostTagIndexService postTagIndexService, PostService postService) {
         return (args) -> {
             storageService.init();
+            postService.backfillSummaries();
+            postSearchService.init();
+            postTagIndexService.init();
         };
     }
 
@@ -1,92 +1,83 @@
 package com.project.blog.aspect;
 
-import com.project.blog.pojo.Post;
+import com.project.blog.pojo.AuditEvent;
 import com.project.blog.pojo.UserBean;
-import com.project.blog.service.UserService;
-import org.aspectj.lang.JoinPoint;
-import org.aspectj.lang.annotation.AfterReturning;
+import com.project.blog.service.AuditLogService;
+import com.project.blog.service.CurrentUserService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
-import org.aspectj.lang.annotation.Before;
-import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.CRC32C;
+
+/**
+ * record every post write in the audit log, the arguments are bound by the pointcuts
+ * so nothing is looked up by parameter name at runtime
+ */
 @Aspect
 @Component
 public class PostControllerLoggingAspect {
 
-    private final Logger logger = LoggerFactory.getLogger(this.getClass());
-    private static final ThreadLocal<UserBean> userThreadLocal = new ThreadLocal<>();  // thread safe
-    private final UserService userService;
+    private final CurrentUserService currentUserService;
+    private final AuditLogService auditLogService;
 
     @Autowired
-    public PostControllerLoggingAspect(UserService userService) {
-        this.userService = userService;
+    public PostControllerLoggingAspect(CurrentUserService currentUserService, AuditLogService auditLogService) {
+        this.currentUserService = currentUserService;
+        this.auditLogService = auditLogService;
     }
 
-    @Pointcut("execution(* com.project.blog.controller.PostController.insertPost(..)) || " +
-            "execution(* com.project.blog.controller.PostController.updatePost(..)) || " +
-            "execution(* com.project.blog.controller.PostController.deletePost(..))")
-    public void postControllerMethods() { }
+    @Around("execution(* com.project.blog.controller.PostController.insertPost(..)) && args(title, content, image, tags)")
+    public Object logInsert(ProceedingJoinPoint joinPoint, String title, String content, MultipartFile image, String tags) throws Throwable {
+        return log(joinPoint, "create", null, title, content, image, tags);
+    }
 
-    @Before("postControllerMethods()")
-    public void logBefore(JoinPoint joinPoint) {
-        UserBean user = getUser();
-        userThreadLocal.set(user);
+    @Around("execution(* com.project.blog.controller.PostController.updatePost(..)) && args(id, title, content, image, tags, ..)")
+    public Object logUpdate(ProceedingJoinPoint joinPoint, int id, String title, String content, MultipartFile image, String tags) throws Throwable {
+        return log(joinPoint, "update", id, title, content, image, tags);
+    }
 
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        String methodName = signature.getName();
-        String[] parameterNames = signature.getParameterNames();
-        Object[] parameterValues = joinPoint.getArgs();
-        Post post = new Post();
-        MultipartFile image = null;
-        String tags = "";
+    @Around("execution(* com.project.blog.controller.PostController.deletePost(..)) && args(id)")
+    public Object logDelete(ProceedingJoinPoint joinPoint, int id) throws Throwable {
+        return log(joinPoint, "delete", id, null, null, null, null);
+    }
 
-        for (int i = 0; i < parameterNames.length; i++) {
-            switch (parameterNames[i]) {
-                case "id" -> post.setId((Integer) parameterValues[i]);
-                case "title" -> post.setTitle(parameterValues[i].toString());
-                case "content" -> post.setContent(parameterValues[i].toString());
-                case "image" -> image = (MultipartFile) parameterValues[i];
-                case "tags" -> tags = parameterValues[i].toString();
+    private Object log(ProceedingJoinPoint joinPoint, String action, Integer postId, String title, String content,
+                       MultipartFile image, String tags) throws Throwable {
+        UserBean user = currentUserService.getCurrentUser();
+        Integer status = null;
+        String error = null;
+        try {
+            Object result = joinPoint.proceed();
+            if (result instanceof ResponseEntity<?> response) {
+                status = response.getStatusCode().value();
             }
-        }
-
-        if (methodName.equals("insertPost")) {
-            // creating post
-            logger.info("user[id={}, username='{}'] is creating post with arguments [title='{}', content='{}', image='{}', tags='{}']",
-                    user.getId(), user.getUsername(), post.getTitle(), post.getContent(), image.getOriginalFilename(), tags);
-        } else if (methodName.equals("updatePost")) {
-            // updating post
-            logger.info("user[id={}, username='{}'] is updating post with arguments [id={}, title='{}', content='{}', image='{}', tags='{}']",
-                    user.getId(), user.getUsername(), post.getId(), post.getTitle(), post.getContent(), image.getOriginalFilename(), tags);
-        } else {
-            // deleting post
-            logger.info("user[id={}, username='{}'] is deleting post with arguments [id={}]",
-                    user.getId(), user.getUsername(), post.getId());
+            return result;
+        } catch (Throwable e) {
+            error = e.getClass().getName();
+            throw e;
+        } finally {
+            boolean hasImage = image != null && !image.isEmpty();
+            auditLogService.record(new AuditEvent(Instant.now(), user.getId(), action, postId, title,
+                    content == null ? 0 : content.length(), checksum(content),
+                    hasImage ? image.getOriginalFilename() : null, hasImage ? image.getSize() : 0, tags,
+                    status, error));
         }
     }
 
-    @AfterReturning(pointcut = "postControllerMethods()", returning = "result")
-    public void logAfter(JoinPoint joinPoint, Object result) {
-        UserBean user = userThreadLocal.get();
-
-        String methodName = joinPoint.getSignature().getName();
-        logger.info("user[id={}, username='{}'] has executed {} with result {}", user.getId(), user.getUsername(), methodName, result);
-
-        userThreadLocal.remove();
-    }
-
-    private UserBean getUser() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        return userService.getUserByUsername(username);
+    private static String checksum(String content) {
+        if (content == null) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
     }
 
 }
@@ -1,6 +1,7 @@
 package com.project.blog.aspect;
 
 import com.project.blog.annotation.ValidatePost;
+import com.project.blog.service.ImageType;
 import com.project.blog.service.PostService;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -11,6 +12,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @Aspect
 @Component
 public class PostDataValidationAspect {
@@ -63,17 +67,24 @@ public class PostDataValidationAspect {
 
         if (!image.isEmpty()) {
             // image isn't empty
-            String contentType = image.getContentType();
-            if (!contentType.equals("image/jpeg") && !contentType.equals("image/png")) {
-                // invalid image type
-                return false;
-            }
-
             long size = image.getSize();
             if (size > 5 * 1024 * 1024) {
                 // image is too large
                 return false;
             }
+
+            // only read the first bytes, the content type sent by the client isn't trusted
+            try (InputStream inputStream = image.getInputStream()) {
+                byte[] header = new byte[ImageType.HEADER_SIZE];
+                int length = inputStream.readNBytes(header, 0, header.length);
+                if (ImageType.detect(header, length) == null) {
+                    // invalid image type
+                    return false;
+                }
+            } catch (IOException e) {
+                // unreadable upload
+                return false;
+            }
         }
 
         return true;
@@ -0,0 +1,52 @@
+package com.project.blog.aspect;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+@Aspect
+@Component
+public class StorageMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter bytesWritten;
+
+    @Autowired
+    public StorageMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.bytesWritten = Counter.builder("blog.storage.bytes")
+                .description("Bytes written to or served from storage")
+                .baseUnit("bytes")
+                .tag("direction", "written")
+                .register(meterRegistry);
+    }
+
+    @Around("execution(* com.project.blog.service.StorageService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            Object result = joinPoint.proceed();
+            if (joinPoint.getArgs().length > 0 && joinPoint.getArgs()[0] instanceof MultipartFile file) {
+                bytesWritten.increment(file.getSize());
+            }
+            return result;
+        } catch (Throwable e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("blog.storage")
+                    .description("Time spent in a storage operation")
+                    .tag("operation", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+}
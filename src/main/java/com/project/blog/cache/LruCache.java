@@ -0,0 +1,136 @@
+package com.project.blog.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * thread safe in-memory cache bounded by size (least recently used entry evicted first)
+ * and by time to live
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class LruCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    private long invalidations; // bumped on every invalidation, guards read-through against stale loads
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long putCount;
+
+    public LruCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        V value = lookup(key);
+        if (value != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return value;
+    }
+
+    /**
+     * get the cached value, or load and cache it on a miss. null values are not cached.
+     * a value loaded while the cache was being invalidated is returned but not cached
+     *
+     * @param key    key
+     * @param loader loads the value on a miss
+     * @return cached or loaded value
+     */
+    public V getOrLoad(K key, Function<K, V> loader) {
+        long stamp;
+        synchronized (this) {
+            V value = lookup(key);
+            if (value != null) {
+                hitCount++;
+                return value;
+            }
+            missCount++;
+            stamp = invalidations;
+        }
+
+        // load outside the lock so a slow loader doesn't block other keys
+        V value = loader.apply(key);
+        if (value != null) {
+            synchronized (this) {
+                if (stamp == invalidations) {
+                    entries.put(key, new CacheEntry<>(value, System.currentTimeMillis() + ttlMillis));
+                    putCount++;
+                }
+            }
+        }
+        return value;
+    }
+
+    public synchronized void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, System.currentTimeMillis() + ttlMillis));
+        putCount++;
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+        invalidations++;
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        invalidations++;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized long getPutCount() {
+        return putCount;
+    }
+
+    private V lookup(K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            // expired
+            entries.remove(key);
+            evictionCount++;
+            return null;
+        }
+        return entry.value;
+    }
+
+    private record CacheEntry<V>(V value, long expiresAt) {
+    }
+
+}
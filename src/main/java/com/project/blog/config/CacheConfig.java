@@ -0,0 +1,64 @@
+package com.project.blog.config;
+
+import com.project.blog.cache.LruCache;
+import com.project.blog.cache.LruCacheMetrics;
+import com.project.blog.pojo.FeedDocument;
+import com.project.blog.pojo.PageSnapshot;
+import com.project.blog.pojo.Post;
+import com.project.blog.pojo.UserBean;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public LruCache<Integer, Post> postCache(@Value("${blog.cache.post.max-size:1000}") int maxSize,
+                                             @Value("${blog.cache.post.ttl:10m}") Duration ttl) {
+        return new LruCache<>(maxSize, ttl.toMillis());
+    }
+
+    @Bean
+    public LruCache<Integer, UserBean> userCache(@Value("${blog.cache.user.max-size:1000}") int maxSize,
+                                                 @Value("${blog.cache.user.ttl:10m}") Duration ttl) {
+        return new LruCache<>(maxSize, ttl.toMillis());
+    }
+
+    @Bean
+    public LruCache<String, PageSnapshot> pageCache(@Value("${blog.cache.page.max-size:1000}") int maxSize,
+                                                    @Value("${blog.cache.page.ttl:10m}") Duration ttl) {
+        return new LruCache<>(maxSize, ttl.toMillis());
+    }
+
+    @Bean
+    public LruCache<String, FeedDocument> feedCache(@Value("${blog.cache.feed.max-size:100}") int maxSize,
+                                                    @Value("${blog.cache.feed.ttl:1h}") Duration ttl) {
+        return new LruCache<>(maxSize, ttl.toMillis());
+    }
+
+    @Bean
+    public MeterBinder postCacheMetrics(LruCache<Integer, Post> postCache) {
+        return new LruCacheMetrics(postCache, "post", Tags.empty());
+    }
+
+    @Bean
+    public MeterBinder userCacheMetrics(LruCache<Integer, UserBean> userCache) {
+        return new LruCacheMetrics(userCache, "user", Tags.empty());
+    }
+
+    @Bean
+    public MeterBinder pageCacheMetrics(LruCache<String, PageSnapshot> pageCache) {
+        return new LruCacheMetrics(pageCache, "page", Tags.empty());
+    }
+
+    @Bean
+    public MeterBinder feedCacheMetrics(LruCache<String, FeedDocument> feedCache) {
+        return new LruCacheMetrics(feedCache, "feed", Tags.empty());
+    }
+
+}
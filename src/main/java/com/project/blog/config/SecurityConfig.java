@@ -5,6 +5,7 @@ import com.project.blog.filter.SpaWebFilter;
 import com.project.blog.handler.CustomAuthenticationFailureHandler;
 import com.project.blog.service.CustomUserDetailsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -43,7 +44,11 @@ public class SecurityConfig {
                         .requestMatchers("/", "/index.html", "/static/**",
                                 "/*.ico", "/*.json", "/api/tag", "/api/session",
                                 "/api/user", "/api/login", "/api/signup", "/api/files/**").permitAll()
-                        .requestMatchers(HttpMethod.GET, "/api/post/**").permitAll()
+                        .requestMatchers("/api/post/export").authenticated()
+                        .requestMatchers(HttpMethod.GET, "/api/post/**", "/viewPost/*",
+                                "/rss.xml", "/atom.xml", "/sitemap.xml", "/sitemap-*.xml").permitAll()
+                        // the management server only listens on localhost
+                        .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll()
                         .anyRequest().authenticated()
                 )
                 .csrf((csrf) -> csrf
@@ -0,0 +1,88 @@
+package com.project.blog.controller;
+
+import com.project.blog.pojo.FeedDocument;
+import com.project.blog.service.FeedService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class FeedController {
+
+    private static final MediaType RSS = MediaType.parseMediaType("application/rss+xml;charset=UTF-8");
+    private static final MediaType ATOM = MediaType.parseMediaType("application/atom+xml;charset=UTF-8");
+    private static final MediaType XML = MediaType.parseMediaType("application/xml;charset=UTF-8");
+
+    private final FeedService feedService;
+
+    @Autowired
+    public FeedController(FeedService feedService) {
+        this.feedService = feedService;
+    }
+
+    /**
+     * rss feed of the latest posts
+     *
+     * @return success: http 200
+     * unchanged since the If-None-Match etag or If-Modified-Since date: http 304
+     */
+    @GetMapping("/rss.xml")
+    public ResponseEntity<byte[]> getRss() {
+        return document(feedService.getDocument(FeedService.RSS), RSS);
+    }
+
+    /**
+     * atom feed of the latest posts
+     *
+     * @return success: http 200
+     * unchanged since the If-None-Match etag or If-Modified-Since date: http 304
+     */
+    @GetMapping("/atom.xml")
+    public ResponseEntity<byte[]> getAtom() {
+        return document(feedService.getDocument(FeedService.ATOM), ATOM);
+    }
+
+    /**
+     * sitemap index listing the sitemap pages
+     *
+     * @return success: http 200
+     * unchanged since the If-None-Match etag or If-Modified-Since date: http 304
+     */
+    @GetMapping("/sitemap.xml")
+    public ResponseEntity<byte[]> getSitemapIndex() {
+        return document(feedService.getDocument(FeedService.SITEMAP_INDEX), XML);
+    }
+
+    /**
+     * page of the sitemap
+     *
+     * @param page page number, starting at 1
+     * @return success: http 200
+     * unchanged since the If-None-Match etag or If-Modified-Since date: http 304
+     * no such page: http 404
+     */
+    @GetMapping("/sitemap-{page:\\d+}.xml")
+    public ResponseEntity<byte[]> getSitemapPage(@PathVariable int page) {
+        return document(feedService.getDocument(FeedService.sitemapPage(page)), XML);
+    }
+
+    private static ResponseEntity<byte[]> document(FeedDocument document, MediaType mediaType) {
+        if (document == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // revalidated on every fetch, a matching validator gets an empty 304
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(mediaType)
+                .cacheControl(CacheControl.noCache())
+                .eTag(document.eTag());
+        if (document.lastModified() > 0) {
+            response.lastModified(document.lastModified());
+        }
+        return response.body(document.content());
+    }
+
+}
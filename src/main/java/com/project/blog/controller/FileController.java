@@ -1,35 +1,96 @@
 package com.project.blog.controller;
 
 import com.project.blog.exception.StorageFileNotFoundException;
+import com.project.blog.pojo.FileMetadata;
+import com.project.blog.service.ImageDerivativeService;
 import com.project.blog.service.StorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.*;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
 
 @Controller
 @RequestMapping("/api/files")
 public class FileController {
 
+    // uploads get unique names and are never modified, so clients may keep them forever
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
     private final StorageService storageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final Counter bytesServed;
 
     @Autowired
-    public FileController(StorageService storageService) {
+    public FileController(StorageService storageService, ImageDerivativeService imageDerivativeService, MeterRegistry meterRegistry) {
         this.storageService = storageService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.bytesServed = Counter.builder("blog.storage.bytes")
+                .description("Bytes written to or served from storage")
+                .baseUnit("bytes")
+                .tag("direction", "served")
+                .register(meterRegistry);
     }
 
+    /**
+     * serve an uploaded file. a matching If-None-Match or If-Modified-Since gets an empty 304
+     * and a Range header gets 206 partial content
+     *
+     * @param filename file name
+     * @param width    width the image is displayed at, 0 for the original
+     * @return success: http 200
+     * not modified: http 304
+     * range: http 206
+     * file not found: http 404
+     */
     @GetMapping("/{filename:.+}")
     @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable String filename) {
+    public ResponseEntity<Resource> serveFile(@PathVariable String filename,
+                                              @RequestParam(defaultValue = "0") int width,
+                                              HttpServletRequest request, HttpServletResponse response) {
         try{
+            CacheControl cacheControl = IMMUTABLE;
+            if (width > 0) {
+                // smaller copy if one is ready
+                ImageDerivativeService.Resolved resolved = imageDerivativeService.resolve(filename, width);
+                if (resolved.pending()) {
+                    // the copy will be ready soon, make clients revalidate
+                    cacheControl = CacheControl.noCache();
+                }
+                filename = resolved.filename();
+            }
+            FileMetadata metadata = storageService.loadMetadata(filename);
+            String contentDisposition = ContentDisposition.inline().filename(filename).build().toString();
+
+            if (request.getHeader(HttpHeaders.RANGE) == null) {
+                // answer conditional requests here so only bodies actually sent are counted
+                response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+                if (new ServletWebRequest(request, response).checkNotModified("\"" + metadata.eTag() + "\"", metadata.lastModified())) {
+                    // http 304 already set
+                    return null;
+                }
+                bytesServed.increment(metadata.size());
+            }
+
             Resource file = storageService.loadAsResource(filename);
-            return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION,
-                    "attachment; filename=\"" + file.getFilename() + "\"").body(file);
+            return ResponseEntity.ok()
+                    .contentType(metadata.mediaType())
+                    .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
+                    .cacheControl(cacheControl)
+                    .eTag(metadata.eTag())
+                    .lastModified(metadata.lastModified())
+                    .body(file);
         } catch (StorageFileNotFoundException e){
             return ResponseEntity.notFound().build();
         }
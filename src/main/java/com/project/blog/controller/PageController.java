@@ -0,0 +1,66 @@
+package com.project.blog.controller;
+
+import com.project.blog.pojo.PageSnapshot;
+import com.project.blog.service.PageSnapshotService;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+/**
+ * pages rendered on the server, all other routes of the app get the page from SpaWebFilter
+ */
+@Controller
+public class PageController {
+
+    private final PageSnapshotService pageSnapshotService;
+
+    @Autowired
+    public PageController(PageSnapshotService pageSnapshotService) {
+        this.pageSnapshotService = pageSnapshotService;
+    }
+
+    /**
+     * home feed, or the empty page for routes forwarded by SpaWebFilter
+     *
+     * @return success: http 200
+     * unchanged since the If-None-Match etag: http 304
+     * frontend not built: http 404
+     */
+    @GetMapping("/")
+    public ResponseEntity<String> home(HttpServletRequest request) {
+        boolean forwarded = request.getAttribute(RequestDispatcher.FORWARD_REQUEST_URI) != null;
+        return page(forwarded ? pageSnapshotService.renderShell() : pageSnapshotService.renderHome());
+    }
+
+    /**
+     * post page
+     *
+     * @param id post id
+     * @return success: http 200
+     * unchanged since the If-None-Match etag: http 304
+     * frontend not built: http 404
+     */
+    @GetMapping("/viewPost/{id}")
+    public ResponseEntity<String> viewPost(@PathVariable int id) {
+        return page(pageSnapshotService.renderPost(id));
+    }
+
+    private static ResponseEntity<String> page(PageSnapshot snapshot) {
+        if (snapshot == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // the page holds data that changes, browsers must revalidate it
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_HTML)
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.eTag())
+                .body(snapshot.html());
+    }
+
+}
@@ -2,17 +2,28 @@ package com.project.blog.controller;
 
 import com.github.pagehelper.PageInfo;
 import com.project.blog.annotation.ValidatePost;
+import com.project.blog.pojo.CursorPage;
 import com.project.blog.pojo.Post;
+import com.project.blog.pojo.PostSummary;
 import com.project.blog.service.PostService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 @RestController
 @RequestMapping("/api/post")
 public class PostController {
 
+    // the etag of a post, weak so the response can still be compressed
+    private static final Pattern VERSION_ETAG = Pattern.compile("(?:W/)?\"(\\d{1,9})\"");
+
     private final PostService postService;
 
     @Autowired
@@ -21,19 +32,49 @@ public class PostController {
     }
 
     @GetMapping
-    public ResponseEntity<PageInfo<Post>> getPosts(
+    public ResponseEntity<PageInfo<PostSummary>> getPosts(
             @RequestParam(defaultValue = "") String search,
             @RequestParam(defaultValue = "0") int tagId,
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "4") int pageSize) {
-        PageInfo<Post> posts = postService.getPosts(search, tagId, page, pageSize);
+        PageInfo<PostSummary> posts = postService.getPosts(search, tagId, page, pageSize);
         return ResponseEntity.ok(posts);
     }
 
+    /**
+     * get posts by cursor instead of page number, selected by the presence of the "after" parameter
+     *
+     * @param after    nextCursor of the previous page, empty for the first page
+     * @param pageSize number of posts
+     * @return success: http 200
+     * invalid cursor: http 400
+     */
+    @GetMapping(params = "after")
+    public ResponseEntity<CursorPage<PostSummary>> getPostsAfter(
+            @RequestParam(defaultValue = "") String search,
+            @RequestParam(defaultValue = "0") int tagId,
+            @RequestParam String after,
+            @RequestParam(defaultValue = "4") int pageSize) {
+        try {
+            return ResponseEntity.ok(postService.getPostsAfter(search, tagId, after, pageSize));
+        } catch (IllegalArgumentException e) {
+            // invalid cursor
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * get a post with its version as etag, to be sent back in If-Match when updating it
+     *
+     * @return success: http 200
+     * unchanged since the If-None-Match etag: http 304
+     * post not found: http 404
+     */
     @ValidatePost(data = false)
     @GetMapping("/{id}")
     public ResponseEntity<Post> getPost(@PathVariable int id) {
-        return ResponseEntity.ok(postService.getPostById(id));
+        Post post = postService.getPostById(id);
+        return ResponseEntity.ok().eTag(eTag(post.getVersion())).body(post);
     }
 
     /**
@@ -69,9 +110,11 @@ public class PostController {
      * @param content post content
      * @param image   post image
      * @param tags    post tags
+     * @param ifMatch etag of the post the update is based on, without it the update applies to the current version
      * @return success: http 204
      * request data invalid: http 400
      * post not found: http 404
+     * post changed since the If-Match etag or by a concurrent update: http 412
      */
     @ValidatePost
     @PutMapping("/{id}")
@@ -80,10 +123,26 @@ public class PostController {
             @RequestParam("title") String title,
             @RequestParam("content") String content,
             @RequestParam("image") MultipartFile image,
-            @RequestParam("tags") String tags) {
-        if (postService.updatePost(id, title, content, image, tags)) {
-            // update success
-            return ResponseEntity.noContent().build();
+            @RequestParam("tags") String tags,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        int version = PostService.ANY_VERSION;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            Matcher matcher = VERSION_ETAG.matcher(ifMatch.trim());
+            if (!matcher.matches()) {
+                // not an etag of this post
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            version = Integer.parseInt(matcher.group(1));
+        }
+
+        try {
+            if (postService.updatePost(id, version, title, content, image, tags)) {
+                // update success
+                return ResponseEntity.noContent().build();
+            }
+        } catch (OptimisticLockingFailureException e) {
+            // someone else saved first
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         }
         // update failed
         return ResponseEntity.internalServerError().build();
@@ -101,4 +160,8 @@ public class PostController {
         }
     }
 
+    private static String eTag(int version) {
+        return "W/\"" + version + "\"";
+    }
+
 }
@@ -0,0 +1,57 @@
+package com.project.blog.controller;
+
+import com.project.blog.pojo.ImportResult;
+import com.project.blog.service.PostTransferService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/post")
+public class PostTransferController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final PostTransferService postTransferService;
+
+    @Autowired
+    public PostTransferController(PostTransferService postTransferService) {
+        this.postTransferService = postTransferService;
+    }
+
+    /**
+     * download all posts, one json object per line, written while they are read from the database
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public void exportPosts(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename("posts.ndjson").build().toString());
+        postTransferService.exportPosts(response.getOutputStream());
+    }
+
+    /**
+     * create posts from the request body, one json object per line as produced by the export
+     *
+     * @param body newline delimited json
+     * @return all imported: http 200
+     * stopped at an invalid line: http 400, the posts before it are saved
+     */
+    @PostMapping(value = "/import", consumes = NDJSON)
+    public ResponseEntity<ImportResult> importPosts(InputStream body) {
+        ImportResult result = postTransferService.importPosts(body);
+        if (result.error() != null) {
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
+}
@@ -3,6 +3,7 @@ package com.project.blog.controller;
 import com.project.blog.pojo.Tag;
 import com.project.blog.service.TagService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -21,10 +22,20 @@ public class TagController {
         this.tagService = tagService;
     }
 
+    /**
+     * get all tags with their post counts
+     *
+     * @return success: http 200
+     * unchanged since the If-None-Match etag: http 304
+     */
     @GetMapping
     public ResponseEntity<List<Tag>> getTags() {
-        List<Tag> tags = tagService.getTags();
-        return ResponseEntity.ok(tags);
+        TagService.TagSnapshot snapshot = tagService.getTagSnapshot();
+        // clients may keep the list but must revalidate it, a matching If-None-Match gets an empty 304
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(snapshot.etag())
+                .body(snapshot.tags());
     }
 
 }
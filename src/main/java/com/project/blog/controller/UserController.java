@@ -2,6 +2,7 @@ package com.project.blog.controller;
 
 import com.project.blog.annotation.ValidateUser;
 import com.project.blog.pojo.UserBean;
+import com.project.blog.service.CurrentUserService;
 import com.project.blog.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -14,10 +15,12 @@ import org.springframework.web.bind.annotation.*;
 public class UserController {
 
     private final UserService userService;
+    private final CurrentUserService currentUserService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, CurrentUserService currentUserService) {
         this.userService = userService;
+        this.currentUserService = currentUserService;
     }
 
     @ValidateUser(id = false)
@@ -61,14 +64,12 @@ public class UserController {
             // user is not authenticated
             return ResponseEntity.ok(null);
         }
-        // get the current user's username from the Authentication object
-        String username = authentication.getName();
-        UserBean user = userService.getUserByUsername(username);
+        // get the current user from the principal, no password included
+        UserBean user = currentUserService.getCurrentUser();
         if (user == null) {
             // user not found
             return ResponseEntity.notFound().build();
         }
-        user.setPassword(""); // remove hashed password
         return ResponseEntity.ok(user);
     }
 
@@ -0,0 +1,9 @@
+package com.project.blog.event;
+
+/**
+ * published after a write to posts has committed
+ *
+ * @param postId id of the post that was created, updated or deleted, 0 if any post may have changed
+ */
+public record PostChangedEvent(int postId) {
+}
@@ -13,7 +13,12 @@ public class SpaWebFilter extends OncePerRequestFilter {
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         String path = request.getRequestURI();
-        if (!path.startsWith("/api") && !path.contains(".") && path.matches("/(.*)")) {
+        if (path.equals("/") || path.matches("/viewPost/\\d+")) {
+            // rendered by PageController
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!path.startsWith("/api") && !path.startsWith("/actuator") && !path.contains(".") && path.matches("/(.*)")) {
             // forward to react router
             request.getRequestDispatcher("/").forward(request, response);
             return;
@@ -1,33 +1,89 @@
 package com.project.blog.mapper;
 
+import com.project.blog.pojo.ArchivedPost;
+import com.project.blog.pojo.FeedEntry;
 import com.project.blog.pojo.Post;
+import com.project.blog.pojo.PostSummary;
+import com.project.blog.pojo.PostTag;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 @Mapper
 public interface PostMapper {
 
     @Select({"<script>",
-            "SELECT DISTINCT p.* FROM post p",
-            "LEFT JOIN post_tag pt ON p.id = pt.post_id",
+            "SELECT p.id, p.title, p.excerpt, p.image, p.word_count, p.read_time, p.created_at, p.updated_at, p.user_id FROM post p",
+            "<if test='tagId != 0'>JOIN post_tag pt ON p.id = pt.post_id AND pt.tag_id = #{tagId}</if>",
             "<where>",
             "<if test='search != \"\"'> AND (title LIKE CONCAT('%', #{search}, '%') OR content LIKE CONCAT('%', #{search}, '%'))</if>",
-            "<if test='tagId != 0'> AND pt.tag_id = #{tagId}</if>",
             "</where>",
             "ORDER BY p.id DESC",
             "</script>"})
-    @Results({
+    @Results(id = "postSummaryRow", value = {
             @Result(property = "id", column = "id"),
             @Result(property = "title", column = "title"),
-            @Result(property = "content", column = "content"),
+            @Result(property = "excerpt", column = "excerpt"),
             @Result(property = "image", column = "image"),
+            @Result(property = "wordCount", column = "word_count"),
+            @Result(property = "readTime", column = "read_time"),
             @Result(property = "createdAt", column = "created_at"),
             @Result(property = "updatedAt", column = "updated_at"),
-            @Result(property = "user", column = "user_id", one = @One(select = "com.project.blog.mapper.UserMapper.findById")),
-            @Result(property = "tags", column = "id", many = @Many(select = "com.project.blog.mapper.TagMapper.findByPostId"))
+            @Result(property = "user.id", column = "user_id")
     })
-    List<Post> findAll(@Param("search") String search, @Param("tagId") int tagId);
+    List<PostSummary> findAll(@Param("search") String search, @Param("tagId") int tagId);
+
+    @Select({"<script>",
+            "SELECT p.id, p.title, p.excerpt, p.image, p.word_count, p.read_time, p.created_at, p.updated_at, p.user_id FROM post p",
+            "<if test='tagId != 0'>JOIN post_tag pt ON p.id = pt.post_id AND pt.tag_id = #{tagId}</if>",
+            "<where>",
+            "<if test='search != \"\"'> AND (title LIKE CONCAT('%', #{search}, '%') OR content LIKE CONCAT('%', #{search}, '%'))</if>",
+            "<if test='afterId != 0'> AND p.id &lt; #{afterId}</if>",
+            "</where>",
+            "ORDER BY p.id DESC",
+            "LIMIT #{limit}",
+            "</script>"})
+    @ResultMap("postSummaryRow")
+    List<PostSummary> findAfter(@Param("search") String search, @Param("tagId") int tagId, @Param("afterId") int afterId, @Param("limit") int limit);
+
+    @Select({"<script>",
+            "SELECT id, title, excerpt, image, word_count, read_time, created_at, updated_at, user_id FROM post WHERE id IN",
+            "<foreach item='id' collection='ids' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    @ResultMap("postSummaryRow")
+    List<PostSummary> findByIds(@Param("ids") Collection<Integer> ids);
+
+    @Select("SELECT id, title, content FROM post")
+    List<Post> findAllForSearchIndex();
+
+    // rows are streamed while iterating instead of read all at once, connector/j does that for this fetch size.
+    // set here rather than with useCursorFetch on the url, which would make every statement a server-side prepared one
+    @Select({"SELECT p.id, p.title, p.content, p.image, p.created_at, p.updated_at, u.username AS author,",
+            "(SELECT GROUP_CONCAT(t.name ORDER BY t.id SEPARATOR ' ') FROM post_tag pt JOIN tag t ON t.id = pt.tag_id WHERE pt.post_id = p.id) AS tags",
+            "FROM post p JOIN user u ON u.id = p.user_id ORDER BY p.id"})
+    @Options(fetchSize = Integer.MIN_VALUE)
+    Cursor<ArchivedPost> findAllForExport();
+
+    @Select({"SELECT p.id, p.title, p.excerpt, p.created_at, p.updated_at, u.username AS author,",
+            "(SELECT GROUP_CONCAT(t.name ORDER BY t.id SEPARATOR ' ') FROM post_tag pt JOIN tag t ON t.id = pt.tag_id WHERE pt.post_id = p.id) AS tags",
+            "FROM post p JOIN user u ON u.id = p.user_id ORDER BY p.id DESC LIMIT #{limit}"})
+    Cursor<FeedEntry> findLatestForFeed(int limit);
+
+    @Select("SELECT id, updated_at FROM post ORDER BY id LIMIT #{limit} OFFSET #{offset}")
+    @Options(fetchSize = 1000)
+    Cursor<FeedEntry> findForSitemap(@Param("offset") int offset, @Param("limit") int limit);
+
+    @Select("SELECT COUNT(*) FROM post")
+    int count();
+
+    @Select("SELECT MAX(updated_at) FROM post")
+    Date findLastUpdatedAt();
+
+    @Select("SELECT DISTINCT image FROM post WHERE image IS NOT NULL AND image != ''")
+    List<String> findAllImages();
 
     @Select("SELECT * FROM post WHERE id=#{postId}")
     @Results({
@@ -42,24 +98,53 @@ public interface PostMapper {
     })
     Post findById(int postId);
 
-    @Insert("INSERT INTO post (title, content, image, created_at, updated_at, user_id) VALUES (#{title}, #{content}, #{image}, #{createdAt}, #{updatedAt}, #{user.id})")
+    @Select("SELECT id, content FROM post WHERE excerpt IS NULL LIMIT #{limit}")
+    List<Post> findWithoutSummary(int limit);
+
+    @Insert("INSERT INTO post (title, content, image, excerpt, word_count, read_time, created_at, updated_at, user_id) VALUES (#{title}, #{content}, #{image}, #{excerpt}, #{wordCount}, #{readTime}, #{createdAt}, #{updatedAt}, #{user.id})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(Post post);
 
-    @Update("UPDATE post SET title=#{title}, content=#{content}, image=#{image}, updated_at=#{updatedAt} WHERE id=#{id}")
+    // only applies if the post is still at the version it was read at
+    @Update("UPDATE post SET title=#{title}, content=#{content}, image=#{image}, excerpt=#{excerpt}, word_count=#{wordCount}, read_time=#{readTime}, updated_at=#{updatedAt}, version=version + 1 WHERE id=#{id} AND version=#{version}")
     int update(Post post);
 
+    @Update("UPDATE post SET excerpt=#{excerpt}, word_count=#{wordCount}, read_time=#{readTime} WHERE id=#{id}")
+    int updateSummary(Post post);
+
     @Delete("DELETE FROM post WHERE id=#{postId}")
     int delete(int postId);
 
     @Select("SELECT tag_id FROM post_tag WHERE post_id=#{postId}")
     List<Integer> findPostTagIdsByPostId(int postId);
 
-    @Select("SELECT COUNT(tag_id) FROM post_tag WHERE tag_id=#{tagId}")
-    int getPostTagCountByTagId(int tagId);
+    @Select("SELECT post_id FROM post_tag WHERE tag_id=#{tagId}")
+    List<Integer> findPostIdsByTagId(int tagId);
 
-    @Insert("INSERT INTO post_tag(post_id, tag_id) VALUES(#{postId}, #{tagId})")
-    int insertPostTag(int postId, int tagId);
+    @Select("SELECT post_id, tag_id FROM post_tag")
+    @Results({
+            @Result(property = "postId", column = "post_id"),
+            @Result(property = "tag.id", column = "tag_id")
+    })
+    List<PostTag> findAllPostTags();
+
+    @Insert({"<script>",
+            "INSERT INTO post_tag(post_id, tag_id) VALUES",
+            "<foreach item='tagId' collection='tagIds' separator=','>(#{postId}, #{tagId})</foreach>",
+            "</script>"})
+    int insertPostTags(@Param("postId") int postId, @Param("tagIds") Collection<Integer> tagIds);
+
+    @Insert({"<script>",
+            "INSERT INTO post_tag(post_id, tag_id) VALUES",
+            "<foreach item='postTag' collection='postTags' separator=','>(#{postTag.postId}, #{postTag.tag.id})</foreach>",
+            "</script>"})
+    int insertAllPostTags(@Param("postTags") Collection<PostTag> postTags);
+
+    @Delete({"<script>",
+            "DELETE FROM post_tag WHERE post_id=#{postId} AND tag_id IN",
+            "<foreach item='tagId' collection='tagIds' open='(' separator=',' close=')'>#{tagId}</foreach>",
+            "</script>"})
+    int deletePostTags(@Param("postId") int postId, @Param("tagIds") Collection<Integer> tagIds);
 
     @Delete("DELETE FROM post_tag WHERE post_id=#{postId}")
     int deletePostTagByPostId(int postId);
@@ -1,8 +1,10 @@
 package com.project.blog.mapper;
 
+import com.project.blog.pojo.PostTag;
 import com.project.blog.pojo.Tag;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -11,17 +13,61 @@ public interface TagMapper {
     @Select("SELECT * FROM tag")
     List<Tag> findAll();
 
+    @Select("SELECT t.id, t.name, COUNT(pt.post_id) AS post_count FROM tag t LEFT JOIN post_tag pt ON t.id=pt.tag_id GROUP BY t.id, t.name ORDER BY t.id")
+    List<Tag> findAllWithPostCount();
+
     @Select("SELECT t.* FROM tag t JOIN post_tag pt ON t.id=pt.tag_id WHERE pt.post_id=#{postId}")
     List<Tag> findByPostId(int postId);
 
-    @Select("SELECT * FROM tag WHERE name=#{name}")
-    Tag findByName(String name);
+    @Select({"<script>",
+            "SELECT pt.post_id, t.id AS tag_id, t.name AS tag_name FROM tag t JOIN post_tag pt ON t.id=pt.tag_id",
+            "WHERE pt.post_id IN",
+            "<foreach item='postId' collection='postIds' open='(' separator=',' close=')'>#{postId}</foreach>",
+            "</script>"})
+    @Results({
+            @Result(property = "postId", column = "post_id"),
+            @Result(property = "tag.id", column = "tag_id"),
+            @Result(property = "tag.name", column = "tag_name")
+    })
+    List<PostTag> findByPostIds(@Param("postIds") Collection<Integer> postIds);
+
+    @Select({"<script>",
+            "SELECT * FROM tag WHERE name IN",
+            "<foreach item='name' collection='names' open='(' separator=',' close=')'>#{name}</foreach>",
+            "</script>"})
+    List<Tag> findByNames(@Param("names") Collection<String> names);
+
+    // locking read, unlike a plain select it also sees tags committed by concurrent saves during this transaction
+    @Select({"<script>",
+            "SELECT * FROM tag WHERE name IN",
+            "<foreach item='name' collection='names' open='(' separator=',' close=')'>#{name}</foreach>",
+            "FOR UPDATE",
+            "</script>"})
+    List<Tag> findByNamesForUpdate(@Param("names") Collection<String> names);
+
+    // a name that already exists is skipped, e.g. created by a concurrent save
+    @Insert({"<script>",
+            "INSERT IGNORE INTO tag (name) VALUES",
+            "<foreach item='name' collection='names' separator=','>(#{name})</foreach>",
+            "</script>"})
+    int insertMissing(@Param("names") Collection<String> names);
 
     @Insert("INSERT INTO tag (name) VALUES (#{name})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(Tag tag);
 
-    @Delete("DELETE FROM tag WHERE id=${tagId}")
-    int delete(int tagId);
+    @Insert({"<script>",
+            "INSERT INTO tag (name) VALUES",
+            "<foreach item='tag' collection='list' separator=','>(#{tag.name})</foreach>",
+            "</script>"})
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insertAll(List<Tag> tags);
+
+    @Delete({"<script>",
+            "DELETE FROM tag WHERE id IN",
+            "<foreach item='tagId' collection='tagIds' open='(' separator=',' close=')'>#{tagId}</foreach>",
+            "AND NOT EXISTS (SELECT 1 FROM post_tag pt WHERE pt.tag_id=tag.id)",
+            "</script>"})
+    int deleteUnused(@Param("tagIds") Collection<Integer> tagIds);
 
 }
@@ -3,12 +3,21 @@ package com.project.blog.mapper;
 import com.project.blog.pojo.UserBean;
 import org.apache.ibatis.annotations.*;
 
+import java.util.Collection;
+import java.util.List;
+
 @Mapper
 public interface UserMapper {
 
     @Select("SELECT * FROM user WHERE id = #{id}")
     UserBean findById(int id);
 
+    @Select({"<script>",
+            "SELECT * FROM user WHERE id IN",
+            "<foreach item='id' collection='ids' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"})
+    List<UserBean> findByIds(@Param("ids") Collection<Integer> ids);
+
     @Select("SELECT * FROM user WHERE username = #{username}")
     UserBean findByUsername(String username);
 
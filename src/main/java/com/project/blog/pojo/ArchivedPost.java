@@ -0,0 +1,22 @@
+package com.project.blog.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * a post as one line of a bulk export or import
+ */
+@Data
+public class ArchivedPost {
+
+    private int id; // ignored on import
+    private String title;
+    private String content;
+    private String image; // file name only, files aren't part of the archive
+    private Date createdAt;
+    private Date updatedAt;
+    private String author; // ignored on import, posts belong to the importing user
+    private String tags; // tag names separated by space, like when creating a post
+
+}
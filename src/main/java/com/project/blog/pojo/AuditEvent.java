@@ -0,0 +1,24 @@
+package com.project.blog.pojo;
+
+import java.time.Instant;
+
+/**
+ * one write to a post as recorded in the audit log, sizes and a checksum stand in for the content
+ *
+ * @param timestamp     when the request finished
+ * @param userId        id of the user making the request
+ * @param action        create, update or delete
+ * @param postId        id of the post, null when creating
+ * @param title         title sent, null when deleting
+ * @param contentLength length of the content sent in characters
+ * @param contentCrc    hex encoded crc32c of the content sent, null when deleting
+ * @param image         original name of the image sent, null if none
+ * @param imageSize     size of the image sent in bytes
+ * @param tags          tags sent
+ * @param status        http status returned, null if the request threw
+ * @param error         class of the exception thrown, null on success
+ */
+public record AuditEvent(Instant timestamp, int userId, String action, Integer postId, String title,
+                         int contentLength, String contentCrc, String image, long imageSize, String tags,
+                         Integer status, String error) {
+}
@@ -0,0 +1,14 @@
+package com.project.blog.pojo;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CursorPage<T> {
+
+    private List<T> list;
+    private String nextCursor; // pass as "after" to get the next page, null on the last page
+    private boolean hasNextPage;
+
+}
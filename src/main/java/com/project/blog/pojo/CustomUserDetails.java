@@ -0,0 +1,32 @@
+package com.project.blog.pojo;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * security principal that also carries the user id, so the current user is known without a database lookup
+ */
+public class CustomUserDetails extends User {
+
+    private final int id;
+
+    public CustomUserDetails(int id, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public UserBean toUserBean() {
+        UserBean user = new UserBean();
+        user.setId(id);
+        user.setUsername(getUsername());
+        user.setPassword(""); // never expose the hashed password
+        return user;
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.project.blog.pojo;
+
+/**
+ * a rendered feed or sitemap
+ *
+ * @param content      xml, utf-8 encoded
+ * @param eTag         weak etag of the content
+ * @param lastModified when a post in it last changed, in milliseconds
+ */
+public record FeedDocument(byte[] content, String eTag, long lastModified) {
+}
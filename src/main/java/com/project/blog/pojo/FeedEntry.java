@@ -0,0 +1,21 @@
+package com.project.blog.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * a post as listed in feeds and the sitemap
+ */
+@Data
+public class FeedEntry {
+
+    private int id;
+    private String title;
+    private String excerpt;
+    private Date createdAt;
+    private Date updatedAt;
+    private String author;
+    private String tags; // tag names separated by space
+
+}
@@ -0,0 +1,17 @@
+package com.project.blog.pojo;
+
+import org.springframework.http.MediaType;
+
+import java.nio.file.Path;
+
+/**
+ * what is needed to serve a stored file without touching the file system again
+ *
+ * @param path         absolute path of the file
+ * @param size         size in bytes
+ * @param lastModified last modified time in milliseconds
+ * @param eTag         strong etag, hex encoded sha-256 of the content
+ * @param mediaType    media type guessed from the file name
+ */
+public record FileMetadata(Path path, long size, long lastModified, String eTag, MediaType mediaType) {
+}
@@ -0,0 +1,12 @@
+package com.project.blog.pojo;
+
+/**
+ * outcome of a bulk import
+ *
+ * @param imported       number of posts saved
+ * @param millis         time taken
+ * @param postsPerSecond throughput
+ * @param error          why the import stopped early, null if every line was imported
+ */
+public record ImportResult(int imported, long millis, double postsPerSecond, String error) {
+}
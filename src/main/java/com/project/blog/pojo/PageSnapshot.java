@@ -0,0 +1,10 @@
+package com.project.blog.pojo;
+
+/**
+ * a page rendered on the server
+ *
+ * @param html html of the page
+ * @param eTag weak etag of the html
+ */
+public record PageSnapshot(String html, String eTag) {
+}
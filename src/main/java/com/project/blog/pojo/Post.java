@@ -1,5 +1,6 @@
 package com.project.blog.pojo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
 import java.util.Date;
@@ -12,8 +13,13 @@ public class Post {
     private String title;
     private String content;
     private String image;
+    @JsonIgnore
+    private String excerpt; // only sent in lists, see PostSummary
+    private int wordCount;
+    private int readTime; // minutes
     private Date createdAt;
     private Date updatedAt;
+    private int version; // incremented by every update
     private UserBean user;
     private List<Tag> tags;
 
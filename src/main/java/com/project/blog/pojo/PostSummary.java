@@ -0,0 +1,25 @@
+package com.project.blog.pojo;
+
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * a post as shown in post lists, with an excerpt instead of the content
+ */
+@Data
+public class PostSummary {
+
+    private int id;
+    private String title;
+    private String excerpt;
+    private String image;
+    private int wordCount;
+    private int readTime; // minutes
+    private Date createdAt;
+    private Date updatedAt;
+    private UserBean user;
+    private List<Tag> tags;
+
+}
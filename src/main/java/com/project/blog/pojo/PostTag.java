@@ -0,0 +1,11 @@
+package com.project.blog.pojo;
+
+import lombok.Data;
+
+@Data
+public class PostTag {
+
+    private int postId;
+    private Tag tag;
+
+}
@@ -1,5 +1,6 @@
 package com.project.blog.pojo;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
 @Data
@@ -7,5 +8,7 @@ public class Tag {
 
     private int id;
     private String name;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer postCount; // only set in the tag list
 
 }
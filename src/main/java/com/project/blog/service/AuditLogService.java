@@ -0,0 +1,113 @@
+package com.project.blog.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.blog.pojo.AuditEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * audit log of post writes. request threads put events into a lock-free ring buffer and return,
+ * a background writer drains it periodically and appends each batch as json lines to the "audit" logger
+ * in a single write. when the buffer is full events are dropped and counted rather than blocking the request
+ */
+@Service
+public class AuditLogService {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Logger auditLogger = LoggerFactory.getLogger("audit");
+    private final ObjectMapper objectMapper;
+
+    // ring of 2^n slots, any number of producers and the writer as the only consumer
+    private final AtomicReferenceArray<AuditEvent> buffer;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // next slot to claim
+    private volatile long head; // next slot to read, only advanced by the writer
+    private final LongAdder dropped = new LongAdder();
+
+    private final ScheduledExecutorService writer;
+
+    @Autowired
+    public AuditLogService(ObjectMapper objectMapper,
+                           @Value("${blog.audit.buffer-size:4096}") int bufferSize,
+                           @Value("${blog.audit.flush-interval:200ms}") Duration flushInterval) {
+        this.objectMapper = objectMapper;
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * queue an event for the audit log without blocking
+     *
+     * @param event event
+     * @return false if the buffer was full and the event was dropped
+     */
+    public boolean record(AuditEvent event) {
+        long slot;
+        do {
+            slot = tail.get();
+            if (slot - head > mask) {
+                dropped.increment();
+                return false;
+            }
+        } while (!tail.compareAndSet(slot, slot + 1));
+        buffer.set((int) slot & mask, event);
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(5, TimeUnit.SECONDS);
+        // write whatever was recorded after the last run
+        flush();
+    }
+
+    private synchronized void flush() {
+        StringBuilder batch = new StringBuilder();
+        long next = head;
+        AuditEvent event;
+        // stops at the first slot claimed but not yet filled, the next run picks it up
+        while ((event = buffer.get((int) next & mask)) != null) {
+            buffer.set((int) next & mask, null);
+            next++;
+            try {
+                if (batch.length() > 0) {
+                    batch.append('\n');
+                }
+                batch.append(objectMapper.writeValueAsString(event));
+            } catch (JsonProcessingException e) {
+                logger.warn("Failed to serialize audit event {}", event, e);
+            }
+        }
+        head = next;
+
+        if (batch.length() > 0) {
+            auditLogger.info(batch.toString());
+        }
+        long droppedCount = dropped.sumThenReset();
+        if (droppedCount > 0) {
+            logger.warn("Dropped {} audit events, the buffer was full", droppedCount);
+        }
+    }
+
+}
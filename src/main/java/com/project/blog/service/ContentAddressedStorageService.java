@@ -0,0 +1,257 @@
+package com.project.blog.service;
+
+import com.project.blog.exception.StorageException;
+import com.project.blog.exception.StorageFileNotFoundException;
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.pojo.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * stores each distinct file once, named by the sha-256 of its content and sharded into
+ * upload-dir/ab/cd/abcd....ext. files are shared by every post using the same image,
+ * so delete doesn't remove anything: a background sweep removes files no post.image refers to.
+ * flat file names from the plain file system storage keep working and are deleted right away
+ */
+@Service
+@ConditionalOnProperty(name = "blog.storage.type", havingValue = "content-addressed")
+public class ContentAddressedStorageService implements StorageService {
+
+    // hash, optional derivative width suffix, extension
+    private static final Pattern BLOB_NAME = Pattern.compile("([0-9a-f]{64})(-w\\d+)?\\.([a-z0-9]+)");
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final Path rootLocation = Paths.get("upload-dir");
+    private final Path tempLocation = rootLocation.resolve("tmp");
+    private final Map<String, FileMetadata> metadataCache = new ConcurrentHashMap<>(); // files are never modified
+    // by the first byte of the hash. held by store from the existence check until the file is moved or touched,
+    // and by the sweep from the age check until the delete, so a file is never removed right after being reused
+    private final Lock[] blobLocks = new Lock[256];
+
+    private final PostMapper postMapper;
+    private final long maxFileSize;
+    private final Duration gcGracePeriod;
+
+    @Autowired
+    public ContentAddressedStorageService(PostMapper postMapper,
+                                          @Value("${spring.servlet.multipart.max-file-size:5MB}") DataSize maxFileSize,
+                                          @Value("${blog.storage.gc-grace:PT1H}") Duration gcGracePeriod) {
+        this.postMapper = postMapper;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.gcGracePeriod = gcGracePeriod;
+        for (int i = 0; i < blobLocks.length; i++) {
+            blobLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public void init() {
+        try {
+            Files.createDirectories(tempLocation);
+        } catch (IOException e) {
+            throw new StorageException("Could not initialize storage", e);
+        }
+    }
+
+    @Override
+    public String store(MultipartFile file) {
+
+        if (file.isEmpty()) {
+            throw new StorageException("Failed to store empty file.");
+        }
+
+        Path partFile = tempLocation.resolve(UUID.randomUUID() + ".part");
+        try {
+            UploadWriter.WrittenUpload upload = UploadWriter.write(file, partFile, maxFileSize);
+            String name = upload.sha256() + "." + upload.type().getExtension();
+            Path destinationFile = load(name);
+            Lock lock = blobLock(upload.sha256());
+            lock.lock();
+            try {
+                if (Files.exists(destinationFile)) {
+                    // same content stored before, keep the existing copy and restart its grace period,
+                    // the sweep may be about to remove it if no post refers to it anymore
+                    Files.deleteIfExists(partFile);
+                    Files.setLastModifiedTime(destinationFile, FileTime.fromMillis(System.currentTimeMillis()));
+                } else {
+                    Files.createDirectories(destinationFile.getParent());
+                    Files.move(partFile, destinationFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return name;
+        } catch (IOException e) {
+            throw new StorageException("Failed to store file.", e);
+        }
+    }
+
+    /**
+     * @param filename content hash based name, or a flat name from the plain file system storage
+     * @return sharded path for hash based names, upload-dir/filename otherwise
+     */
+    @Override
+    public Path load(String filename) {
+        Matcher matcher = BLOB_NAME.matcher(filename);
+        if (matcher.matches()) {
+            String hash = matcher.group(1);
+            return rootLocation.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(filename);
+        }
+        return rootLocation.resolve(filename);
+    }
+
+    @Override
+    public Resource loadAsResource(String filename) {
+        Path file = load(filename);
+        if (!file.normalize().startsWith(rootLocation) || !Files.isReadable(file)) {
+            throw new StorageFileNotFoundException("Could not read file: " + filename);
+        }
+        return new FileSystemResource(file);
+    }
+
+    @Override
+    public FileMetadata loadMetadata(String filename) {
+        FileMetadata metadata = metadataCache.get(filename);
+        if (metadata != null) {
+            return metadata;
+        }
+
+        Path file = load(filename).toAbsolutePath();
+        try {
+            if (!Files.isReadable(file)) {
+                throw new StorageFileNotFoundException("Could not read file: " + filename);
+            }
+            String eTag;
+            Matcher matcher = BLOB_NAME.matcher(filename);
+            if (matcher.matches() && matcher.group(2) == null) {
+                // the name is the hash
+                eTag = matcher.group(1);
+            } else {
+                // derivative or flat file, hash once
+                MessageDigest digest = UploadWriter.sha256();
+                try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+                    inputStream.transferTo(OutputStream.nullOutputStream());
+                }
+                eTag = HexFormat.of().formatHex(digest.digest());
+            }
+            MediaType mediaType = MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            metadata = new FileMetadata(file, Files.size(file), Files.getLastModifiedTime(file).toMillis(), eTag, mediaType);
+        } catch (IOException e) {
+            throw new StorageException("Failed to read file metadata.", e);
+        }
+        metadataCache.put(filename, metadata);
+        return metadata;
+    }
+
+    /**
+     * flat files are deleted right away, shared files are left to the sweep
+     *
+     * @param filename file name
+     */
+    @Override
+    public void delete(String filename) {
+        if (BLOB_NAME.matcher(filename).matches()) {
+            // other posts may use the same file
+            return;
+        }
+        try {
+            Files.deleteIfExists(load(filename));
+            metadataCache.remove(filename);
+        } catch (IOException e) {
+            throw new StorageException("Failed to delete file.", e);
+        }
+    }
+
+    /**
+     * remove the files, and their derivatives, that no post.image refers to, and abandoned partial uploads.
+     * files younger than the grace period are kept, their post may not be committed yet
+     */
+    @Scheduled(fixedDelayString = "${blog.storage.gc-interval:PT1H}", initialDelayString = "${blog.storage.gc-interval:PT1H}")
+    public void collectGarbage() {
+        Set<String> referencedHashes = new HashSet<>();
+        for (String image : postMapper.findAllImages()) {
+            Matcher matcher = BLOB_NAME.matcher(image);
+            if (matcher.matches()) {
+                referencedHashes.add(matcher.group(1));
+            }
+        }
+
+        long cutoff = System.currentTimeMillis() - gcGracePeriod.toMillis();
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(rootLocation, 3)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(file) || Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                    continue;
+                }
+                Matcher matcher = BLOB_NAME.matcher(file.getFileName().toString());
+                boolean abandonedUpload = file.getParent().equals(tempLocation);
+                if (!abandonedUpload && (!matcher.matches() || referencedHashes.contains(matcher.group(1)))) {
+                    continue;
+                }
+                if (abandonedUpload) {
+                    Files.deleteIfExists(file);
+                } else if (!deleteIfStillOld(file, matcher.group(1), cutoff)) {
+                    // reused by an upload since it was checked
+                    continue;
+                }
+                metadataCache.remove(file.getFileName().toString());
+                deleted++;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to sweep unreferenced files", e);
+        }
+        if (deleted > 0) {
+            logger.info("Deleted {} unreferenced files", deleted);
+        }
+    }
+
+    /**
+     * delete a file unless store touched it since the sweep looked at its age
+     *
+     * @return whether the file was deleted
+     */
+    private boolean deleteIfStillOld(Path file, String hash, long cutoff) throws IOException {
+        Lock lock = blobLock(hash);
+        lock.lock();
+        try {
+            if (Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                return false;
+            }
+            return Files.deleteIfExists(file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lock blobLock(String hash) {
+        return blobLocks[Integer.parseInt(hash.substring(0, 2), 16)];
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.project.blog.service;
+
+import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.CustomUserDetails;
+import com.project.blog.pojo.UserBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+@Service
+public class CurrentUserService {
+
+    private final UserMapper userMapper;
+
+    @Autowired
+    public CurrentUserService(UserMapper userMapper) {
+        this.userMapper = userMapper;
+    }
+
+    /**
+     * get the authenticated user from the security principal set at login
+     *
+     * @return user with id and username only
+     */
+    public UserBean getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication.getPrincipal() instanceof CustomUserDetails userDetails) {
+            return userDetails.toUserBean();
+        }
+        // principal without id, look it up
+        UserBean user = userMapper.findByUsername(authentication.getName());
+        if (user != null) {
+            user.setPassword("");
+        }
+        return user;
+    }
+
+}
@@ -1,9 +1,9 @@
 package com.project.blog.service;
 
 import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.CustomUserDetails;
 import com.project.blog.pojo.UserBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -28,7 +28,7 @@ public class CustomUserDetailsService implements UserDetailsService {
             // username not found
             throw new UsernameNotFoundException(username);
         }
-        return new User(user.getUsername(), user.getPassword(), new ArrayList<>());
+        return new CustomUserDetails(user.getId(), user.getUsername(), user.getPassword(), new ArrayList<>());
     }
 
 }
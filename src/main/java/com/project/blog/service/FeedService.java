@@ -0,0 +1,316 @@
+package com.project.blog.service;
+
+import com.project.blog.cache.LruCache;
+import com.project.blog.event.PostChangedEvent;
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.pojo.FeedDocument;
+import com.project.blog.pojo.FeedEntry;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * rss and atom feeds of the latest posts and the sitemap of all posts. rows are read through a cursor and written
+ * as they arrive, the rendered xml is cached until a post changes so crawlers are served from memory
+ */
+@Service
+public class FeedService {
+
+    public static final String RSS = "rss";
+    public static final String ATOM = "atom";
+    public static final String SITEMAP_INDEX = "sitemap";
+
+    private static final int FEED_SIZE = 20;
+    private static final int SITEMAP_PAGE_SIZE = 45_000; // a sitemap may list at most 50,000 urls
+    private static final String SITEMAP_PAGE = "sitemap-";
+    private static final String TITLE = "Blog";
+    private static final String DESCRIPTION = "Website that allows users to post blogs";
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+
+    private final PostMapper postMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final LruCache<String, FeedDocument> feedCache;
+    private final String baseUrl;
+    // one render at a time, concurrent misses wait for it instead of all querying. cache hits don't take it
+    private final ReentrantLock renderLock = new ReentrantLock();
+
+    private volatile long changedAt; // last post change seen by this instance, also covers deletions
+
+    @Autowired
+    public FeedService(PostMapper postMapper, PlatformTransactionManager transactionManager,
+                       LruCache<String, FeedDocument> feedCache, @Value("${blog.base-url}") String baseUrl) {
+        this.postMapper = postMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.feedCache = feedCache;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /**
+     * get a rendered feed or sitemap
+     *
+     * @param name RSS, ATOM, SITEMAP_INDEX or the name of a sitemap page
+     * @return document, null if there is no such sitemap page
+     */
+    public FeedDocument getDocument(String name) {
+        return feedCache.getOrLoad(name, this::renderOnce);
+    }
+
+    /**
+     * name of a page of the sitemap
+     *
+     * @param page page number, starting at 1
+     * @return name for getDocument
+     */
+    public static String sitemapPage(int page) {
+        return SITEMAP_PAGE + page;
+    }
+
+    @EventListener
+    public void onPostChanged(PostChangedEvent event) {
+        changedAt = System.currentTimeMillis();
+        feedCache.invalidateAll();
+    }
+
+    private FeedDocument renderOnce(String name) {
+        renderLock.lock();
+        try {
+            // another request may have rendered it while this one waited
+            FeedDocument document = feedCache.get(name);
+            return document != null ? document : render(name);
+        } finally {
+            renderLock.unlock();
+        }
+    }
+
+    private FeedDocument render(String name) {
+        // read before rendering, a change during the render invalidates the cache and is seen next time
+        long lastModified = lastModified();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try {
+            XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter(content, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            switch (name) {
+                case RSS -> writeRss(writer, lastModified);
+                case ATOM -> writeAtom(writer, lastModified);
+                case SITEMAP_INDEX -> writeSitemapIndex(writer, lastModified);
+                default -> {
+                    if (!writeSitemapPage(writer, name)) {
+                        return null;
+                    }
+                }
+            }
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Failed to render " + name, e);
+        }
+
+        byte[] bytes = content.toByteArray();
+        String eTag = "W/\"" + DigestUtils.md5DigestAsHex(bytes) + "\"";
+        return new FeedDocument(bytes, eTag, lastModified);
+    }
+
+    private void writeRss(XMLStreamWriter writer, long lastModified) throws XMLStreamException {
+        writer.writeStartElement("rss");
+        writer.writeAttribute("version", "2.0");
+        writer.writeNamespace("atom", "http://www.w3.org/2005/Atom");
+        writer.writeNamespace("dc", "http://purl.org/dc/elements/1.1/");
+        writer.writeStartElement("channel");
+        writeElement(writer, "title", TITLE);
+        writeElement(writer, "link", baseUrl + "/");
+        writeElement(writer, "description", DESCRIPTION);
+        writeElement(writer, "lastBuildDate", rfc1123(lastModified));
+        writer.writeEmptyElement("atom", "link", "http://www.w3.org/2005/Atom");
+        writer.writeAttribute("href", baseUrl + "/rss.xml");
+        writer.writeAttribute("rel", "self");
+        writer.writeAttribute("type", "application/rss+xml");
+
+        forEachLatestPost(post -> {
+            String link = postUrl(post);
+            writer.writeStartElement("item");
+            writeElement(writer, "title", post.getTitle());
+            writeElement(writer, "link", link);
+            writer.writeStartElement("guid");
+            writer.writeAttribute("isPermaLink", "true");
+            writer.writeCharacters(link);
+            writer.writeEndElement();
+            writeElement(writer, "pubDate", rfc1123(post.getCreatedAt().getTime()));
+            writer.writeStartElement("dc", "creator", "http://purl.org/dc/elements/1.1/");
+            writer.writeCharacters(post.getAuthor());
+            writer.writeEndElement();
+            for (String tag : tagNames(post)) {
+                writeElement(writer, "category", tag);
+            }
+            writeElement(writer, "description", post.getExcerpt());
+            writer.writeEndElement();
+        });
+
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private void writeAtom(XMLStreamWriter writer, long lastModified) throws XMLStreamException {
+        writer.writeStartElement("feed");
+        writer.writeDefaultNamespace("http://www.w3.org/2005/Atom");
+        writeElement(writer, "id", baseUrl + "/");
+        writeElement(writer, "title", TITLE);
+        writeElement(writer, "subtitle", DESCRIPTION);
+        writeElement(writer, "updated", iso8601(lastModified));
+        writeLink(writer, baseUrl + "/atom.xml", "self");
+        writeLink(writer, baseUrl + "/", "alternate");
+
+        forEachLatestPost(post -> {
+            String link = postUrl(post);
+            writer.writeStartElement("entry");
+            writeElement(writer, "id", link);
+            writeElement(writer, "title", post.getTitle());
+            writeLink(writer, link, "alternate");
+            writeElement(writer, "published", iso8601(post.getCreatedAt().getTime()));
+            writeElement(writer, "updated", iso8601(post.getUpdatedAt().getTime()));
+            writer.writeStartElement("author");
+            writeElement(writer, "name", post.getAuthor());
+            writer.writeEndElement();
+            for (String tag : tagNames(post)) {
+                writer.writeEmptyElement("category");
+                writer.writeAttribute("term", tag);
+            }
+            writeElement(writer, "summary", post.getExcerpt());
+            writer.writeEndElement();
+        });
+
+        writer.writeEndElement();
+    }
+
+    private void writeSitemapIndex(XMLStreamWriter writer, long lastModified) throws XMLStreamException {
+        int pages = Math.max(1, (postMapper.count() + SITEMAP_PAGE_SIZE - 1) / SITEMAP_PAGE_SIZE);
+        writer.writeStartElement("sitemapindex");
+        writer.writeDefaultNamespace("http://www.sitemaps.org/schemas/sitemap/0.9");
+        for (int page = 1; page <= pages; page++) {
+            writer.writeStartElement("sitemap");
+            writeElement(writer, "loc", baseUrl + "/" + sitemapPage(page) + ".xml");
+            writeElement(writer, "lastmod", iso8601(lastModified));
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+
+    private boolean writeSitemapPage(XMLStreamWriter writer, String name) throws XMLStreamException {
+        if (!name.startsWith(SITEMAP_PAGE)) {
+            return false;
+        }
+        int page;
+        try {
+            page = Integer.parseInt(name.substring(SITEMAP_PAGE.length()));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        // long, a large page number would overflow int
+        if (page < 1 || (page > 1 && (page - 1L) * SITEMAP_PAGE_SIZE >= postMapper.count())) {
+            // the first page always exists, it lists the home page
+            return false;
+        }
+
+        writer.writeStartElement("urlset");
+        writer.writeDefaultNamespace("http://www.sitemaps.org/schemas/sitemap/0.9");
+        if (page == 1) {
+            writer.writeStartElement("url");
+            writeElement(writer, "loc", baseUrl + "/");
+            writer.writeEndElement();
+        }
+        forEach(() -> postMapper.findForSitemap((page - 1) * SITEMAP_PAGE_SIZE, SITEMAP_PAGE_SIZE), post -> {
+            writer.writeStartElement("url");
+            writeElement(writer, "loc", postUrl(post));
+            writeElement(writer, "lastmod", iso8601(post.getUpdatedAt().getTime()));
+            writer.writeEndElement();
+        });
+        writer.writeEndElement();
+        return true;
+    }
+
+    private void forEachLatestPost(EntryWriter entryWriter) throws XMLStreamException {
+        forEach(() -> postMapper.findLatestForFeed(FEED_SIZE), entryWriter);
+    }
+
+    /**
+     * write the rows of a cursor, which is only open inside a transaction
+     */
+    private void forEach(CursorQuery query, EntryWriter entryWriter) throws XMLStreamException {
+        XMLStreamException exception = transactionTemplate.execute(status -> {
+            try (Cursor<FeedEntry> cursor = query.open()) {
+                for (FeedEntry post : cursor) {
+                    entryWriter.write(post);
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                return e;
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to close cursor", e);
+            }
+        });
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private long lastModified() {
+        Date lastUpdatedAt = postMapper.findLastUpdatedAt();
+        return Math.max(lastUpdatedAt == null ? 0 : lastUpdatedAt.getTime(), changedAt);
+    }
+
+    private String postUrl(FeedEntry post) {
+        return baseUrl + "/viewPost/" + post.getId();
+    }
+
+    private static String[] tagNames(FeedEntry post) {
+        return post.getTags() == null || post.getTags().isEmpty() ? new String[0] : post.getTags().split(" ");
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(text == null ? "" : text);
+        writer.writeEndElement();
+    }
+
+    private static void writeLink(XMLStreamWriter writer, String href, String rel) throws XMLStreamException {
+        writer.writeEmptyElement("link");
+        writer.writeAttribute("href", href);
+        writer.writeAttribute("rel", rel);
+    }
+
+    private static String rfc1123(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atOffset(ZoneOffset.UTC));
+    }
+
+    private static String iso8601(long millis) {
+        return Instant.ofEpochMilli(millis).truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    private interface CursorQuery {
+        Cursor<FeedEntry> open();
+    }
+
+    private interface EntryWriter {
+        void write(FeedEntry post) throws XMLStreamException;
+    }
+
+}
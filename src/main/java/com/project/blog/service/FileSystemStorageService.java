@@ -2,25 +2,70 @@ package com.project.blog.service;
 
 import com.project.blog.exception.StorageException;
 import com.project.blog.exception.StorageFileNotFoundException;
-import org.apache.commons.io.FilenameUtils;
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.pojo.FileMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
+@ConditionalOnProperty(name = "blog.storage.type", havingValue = "filesystem", matchIfMissing = true)
 public class FileSystemStorageService implements StorageService {
 
+    private static final String ETAG_SUFFIX = ".etag"; // file next to each upload holding its content hash
+    private static final String PART_SUFFIX = ".part"; // upload still being written
+    private static final String TMP_SUFFIX = ".tmp"; // resized derivative still being written
+    // original name of a stored file: upload, etag, partial upload or resized derivative
+    private static final Pattern STORED_NAME = Pattern.compile("(.+?)(-w\\d+)?(\\.[^.]+)(\\.etag|\\.part|\\.tmp)?");
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final Path rootLocation = Paths.get("upload-dir");
+    private final Map<String, FileMetadata> metadataCache = new ConcurrentHashMap<>(); // files are never modified
+
+    private final PostMapper postMapper;
+    private final long maxFileSize;
+    private final Duration gcGracePeriod;
+
+    @Autowired
+    public FileSystemStorageService(PostMapper postMapper,
+                                    @Value("${spring.servlet.multipart.max-file-size:5MB}") DataSize maxFileSize,
+                                    @Value("${blog.storage.gc-grace:PT1H}") Duration gcGracePeriod) {
+        this.postMapper = postMapper;
+        this.maxFileSize = maxFileSize.toBytes();
+        this.gcGracePeriod = gcGracePeriod;
+    }
 
     @Override
     public void init() {
@@ -38,29 +83,29 @@ public class FileSystemStorageService implements StorageService {
             throw new StorageException("Failed to store empty file.");
         }
 
-        String fileName = file.getOriginalFilename();
-        String ext = FilenameUtils.getExtension(fileName);
-        String uniqueName = UUID.randomUUID() + "." + ext;
-
+        String id = UUID.randomUUID().toString();
         try {
+            // stream into the upload directory, then rename so a partial file is never visible under the final name
+            Path partFile = this.rootLocation.resolve(id + PART_SUFFIX);
+            UploadWriter.WrittenUpload upload = UploadWriter.write(file, partFile, maxFileSize);
 
+            String uniqueName = id + "." + upload.type().getExtension();
             Path destinationFile = this.rootLocation.resolve(
                             Paths.get(uniqueName))
                     .normalize().toAbsolutePath();
             if (!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath())) {
                 // This is a security check
+                Files.deleteIfExists(partFile);
                 throw new StorageException(
                         "Cannot store file outside current directory.");
             }
-            try (InputStream inputStream = file.getInputStream()) {
-                Files.copy(inputStream, destinationFile,
-                        StandardCopyOption.REPLACE_EXISTING);
-            }
+            Files.move(partFile, destinationFile, StandardCopyOption.ATOMIC_MOVE);
+            // the hash computed while copying is the etag
+            writeETag(uniqueName, upload.sha256());
+            return uniqueName;
         } catch (IOException e) {
             throw new StorageException("Failed to store file.", e);
         }
-
-        return uniqueName;
     }
 
     @Override
@@ -70,6 +115,9 @@ public class FileSystemStorageService implements StorageService {
 
     @Override
     public Resource loadAsResource(String filename) {
+        if (!isServable(filename)) {
+            throw new StorageFileNotFoundException("Could not read file: " + filename);
+        }
         try {
             Path file = load(filename);
             Resource resource = new UrlResource(file.toUri());
@@ -85,13 +133,116 @@ public class FileSystemStorageService implements StorageService {
         }
     }
 
+    /**
+     * get size, modification time, etag and media type of a file, cached after the first call.
+     * the etag is computed at upload and stored next to the file,
+     * files uploaded before etags existed are hashed on first request
+     *
+     * @param filename file name
+     * @return file metadata
+     */
+    @Override
+    public FileMetadata loadMetadata(String filename) {
+        FileMetadata metadata = metadataCache.get(filename);
+        if (metadata != null) {
+            return metadata;
+        }
+        if (!isServable(filename)) {
+            // checked before hashing, an etag written for a file still being written would be wrong and never removed
+            throw new StorageFileNotFoundException("Could not read file: " + filename);
+        }
+
+        Path file = load(filename).toAbsolutePath();
+        Path eTagFile = load(filename + ETAG_SUFFIX);
+        try {
+            if (!Files.isReadable(file)) {
+                throw new StorageFileNotFoundException("Could not read file: " + filename);
+            }
+            String eTag;
+            if (Files.exists(eTagFile)) {
+                eTag = Files.readString(eTagFile, StandardCharsets.UTF_8).trim();
+            } else {
+                MessageDigest digest = UploadWriter.sha256();
+                try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+                    inputStream.transferTo(OutputStream.nullOutputStream());
+                }
+                eTag = HexFormat.of().formatHex(digest.digest());
+                writeETag(filename, eTag);
+            }
+            MediaType mediaType = MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            metadata = new FileMetadata(file, Files.size(file), Files.getLastModifiedTime(file).toMillis(), eTag, mediaType);
+        } catch (IOException e) {
+            throw new StorageException("Failed to read file metadata.", e);
+        }
+        metadataCache.put(filename, metadata);
+        return metadata;
+    }
+
     @Override
     public void delete(String filename) {
         try {
             Path file = load(filename);
             Files.deleteIfExists(file);
+            Files.deleteIfExists(load(filename + ETAG_SUFFIX));
+            metadataCache.remove(filename);
         } catch (IOException e) {
             throw new StorageException("Failed to delete file.", e);
         }
     }
+
+    /**
+     * reconcile upload-dir with post.image: delete the files no post refers to (with their etags and derivatives)
+     * and report images posts refer to that are missing. files younger than the grace period are kept,
+     * their post may not be committed yet
+     */
+    @Scheduled(fixedDelayString = "${blog.storage.gc-interval:PT1H}", initialDelayString = "${blog.storage.gc-interval:PT1H}")
+    public void collectGarbage() {
+        Set<String> referencedImages = new HashSet<>(postMapper.findAllImages());
+
+        long cutoff = System.currentTimeMillis() - gcGracePeriod.toMillis();
+        Set<String> storedImages = new HashSet<>();
+        int deleted = 0;
+        try (Stream<Path> files = Files.list(rootLocation)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                Matcher matcher = STORED_NAME.matcher(name);
+                if (!Files.isRegularFile(file) || !matcher.matches()) {
+                    continue;
+                }
+                String imageName = matcher.group(1) + matcher.group(3);
+                if (imageName.equals(name)) {
+                    storedImages.add(name);
+                }
+                if (referencedImages.contains(imageName) || Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                    continue;
+                }
+                Files.deleteIfExists(file);
+                metadataCache.remove(name);
+                deleted++;
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to sweep unreferenced files", e);
+            return;
+        }
+
+        referencedImages.removeAll(storedImages);
+        if (deleted > 0) {
+            logger.info("Deleted {} unreferenced files", deleted);
+        }
+        if (!referencedImages.isEmpty()) {
+            logger.warn("{} images referenced by posts are missing: {}", referencedImages.size(), referencedImages);
+        }
+    }
+
+    private void writeETag(String filename, String eTag) throws IOException {
+        Files.writeString(load(filename + ETAG_SUFFIX), eTag, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * etags aren't served, nor are uploads and derivatives that are still being written
+     */
+    private static boolean isServable(String filename) {
+        return !filename.endsWith(ETAG_SUFFIX) && !filename.endsWith(PART_SUFFIX) && !filename.endsWith(TMP_SUFFIX);
+    }
+
 }
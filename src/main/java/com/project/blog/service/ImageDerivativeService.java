@@ -0,0 +1,247 @@
+package com.project.blog.service;
+
+import com.project.blog.cache.LruCache;
+import com.project.blog.exception.StorageFileNotFoundException;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * creates smaller copies of uploaded images in the background, stored next to the original as name-w{width}.ext
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final float JPEG_QUALITY = 0.8f;
+    // a decoded pixel takes 4 bytes, larger images are served as uploaded instead of decoded.
+    // a small file can declare huge dimensions
+    private static final long MAX_PIXELS = 40_000_000;
+    private static final int RESOLVED_CACHE_SIZE = 10_000;
+    private static final long RESOLVED_CACHE_TTL = TimeUnit.DAYS.toMillis(1);
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final StorageService storageService;
+    private final int[] widths;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet(); // originals with a queued or running job
+    // derivative name -> file to serve for it, the derivative or the original if it will never be created
+    private final LruCache<String, String> resolved = new LruCache<>(RESOLVED_CACHE_SIZE, RESOLVED_CACHE_TTL);
+
+    @Autowired
+    public ImageDerivativeService(StorageService storageService,
+                                  @Value("${blog.image.derivative-widths:320,640}") int[] widths,
+                                  @Value("${blog.image.workers:2}") int workers,
+                                  @Value("${blog.image.queue-size:100}") int queueSize) {
+        this.storageService = storageService;
+        this.widths = widths.clone();
+        Arrays.sort(this.widths);
+        // bounded, so a burst of uploads can't pile up decoded images in memory
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "image-derivative");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * queue the creation of the derivatives of an image, the original is served until they are ready
+     *
+     * @param filename name of the stored original
+     */
+    public void generate(String filename) {
+        pending.add(filename);
+        try {
+            executor.execute(() -> {
+                try {
+                    createDerivatives(filename);
+                } finally {
+                    pending.remove(filename);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // queue full, the original will be served
+            pending.remove(filename);
+            logger.warn("Skipped derivatives of {}, image queue is full", filename);
+        }
+    }
+
+    /**
+     * pick the smallest derivative at least as wide as requested. once known, the outcome is remembered,
+     * including that no derivative will be created: the original is narrower, the queue was full or resizing failed
+     *
+     * @param filename name of the stored original
+     * @param width    width the client will display
+     * @return name of the derivative, or of the original if no suitable derivative exists,
+     * pending if a derivative may still be created
+     */
+    public Resolved resolve(String filename, int width) {
+        for (int derivativeWidth : widths) {
+            if (derivativeWidth >= width) {
+                String derivative = derivativeName(filename, derivativeWidth);
+                String cached = resolved.get(derivative);
+                if (cached != null) {
+                    return new Resolved(cached, false);
+                }
+                // checked before the file, so a job finishing in between isn't taken for one that never ran
+                boolean wasPending = pending.contains(filename);
+                try {
+                    storageService.loadMetadata(derivative);
+                    resolved.put(derivative, derivative);
+                    return new Resolved(derivative, false);
+                } catch (StorageFileNotFoundException e) {
+                    if (wasPending) {
+                        // not created yet
+                        return new Resolved(filename, true);
+                    }
+                    resolved.put(derivative, filename);
+                    return new Resolved(filename, false);
+                }
+            }
+        }
+        return new Resolved(filename, false);
+    }
+
+    /**
+     * delete the derivatives of an image
+     *
+     * @param filename name of the stored original
+     */
+    public void delete(String filename) {
+        for (int width : widths) {
+            storageService.delete(derivativeName(filename, width));
+            resolved.invalidate(derivativeName(filename, width));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void createDerivatives(String filename) {
+        String ext = FilenameUtils.getExtension(filename).toLowerCase();
+        String format = ext.equals("png") ? "png" : "jpeg";
+        try {
+            BufferedImage original = read(storageService.load(filename), filename);
+            if (original == null) {
+                return;
+            }
+            for (int width : widths) {
+                if (width >= original.getWidth()) {
+                    // never upscale, the original is served instead
+                    break;
+                }
+                int height = Math.max(1, Math.round((float) original.getHeight() * width / original.getWidth()));
+                BufferedImage resized = resize(original, width, height, format.equals("png"));
+
+                // write to a temporary file first so a half written derivative is never served
+                Path target = storageService.load(derivativeName(filename, width));
+                Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+                write(resized, format, temp);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to create derivatives of {}", filename, e);
+        }
+    }
+
+    /**
+     * decode an image, checking the dimensions in its header first
+     *
+     * @return the image, null if ImageIO can't decode the format or the image has more than MAX_PIXELS
+     */
+    private BufferedImage read(Path path, String filename) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(path.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                // not a format ImageIO can decode
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > MAX_PIXELS) {
+                    logger.warn("Skipped derivatives of {}, {} pixels is too large", filename, pixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage original, int width, int height, boolean alpha) {
+        BufferedImage resized = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private static void write(BufferedImage image, String format, Path path) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(path.toFile())) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format.equals("jpeg")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static String derivativeName(String filename, int width) {
+        return FilenameUtils.getBaseName(filename) + "-w" + width + "." + FilenameUtils.getExtension(filename);
+    }
+
+    /**
+     * file to serve for a requested width
+     *
+     * @param filename name of the derivative or the original
+     * @param pending  whether a derivative of the original may still be created
+     */
+    public record Resolved(String filename, boolean pending) {
+    }
+
+}
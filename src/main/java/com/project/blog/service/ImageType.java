@@ -0,0 +1,50 @@
+package com.project.blog.service;
+
+/**
+ * accepted image formats, recognized by their leading bytes rather than the content type sent by the client
+ */
+public enum ImageType {
+
+    JPEG("jpg", new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+    PNG("png", new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+
+    public static final int HEADER_SIZE = 8; // enough bytes to recognize every type
+
+    private final String extension;
+    private final byte[] magic;
+
+    ImageType(String extension, byte[] magic) {
+        this.extension = extension;
+        this.magic = magic;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * recognize an image by its first bytes
+     *
+     * @param header first bytes of the file, at most HEADER_SIZE are looked at
+     * @param length number of valid bytes in header
+     * @return image type, null if it isn't an accepted image
+     */
+    public static ImageType detect(byte[] header, int length) {
+        for (ImageType type : values()) {
+            if (length >= type.magic.length && startsWith(header, type.magic)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
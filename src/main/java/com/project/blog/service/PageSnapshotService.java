@@ -0,0 +1,204 @@
+package com.project.blog.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.pagehelper.PageInfo;
+import com.project.blog.cache.LruCache;
+import com.project.blog.event.PostChangedEvent;
+import com.project.blog.pojo.PageSnapshot;
+import com.project.blog.pojo.Post;
+import com.project.blog.pojo.PostSummary;
+import com.project.blog.pojo.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * renders the home feed and post pages on the server: the built index.html with a static copy of the page
+ * in the root element, replaced once the app starts, and the data the app would fetch inlined as
+ * window.__INITIAL_DATA__. rendered pages are cached until a post changes
+ */
+@Service
+public class PageSnapshotService {
+
+    private static final String TEMPLATE_LOCATION = "classpath:static/index.html";
+    private static final String ROOT_ELEMENT = "<div id=\"root\"></div>";
+    private static final String TITLE_ELEMENT = "<title>Blog</title>";
+    private static final String HOME_KEY = "home";
+    private static final int HOME_PAGE_SIZE = 4; // same as the app's first request
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final PostService postService;
+    private final TagService tagService;
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+    private final LruCache<String, PageSnapshot> pageCache;
+
+    private volatile String template; // loaded on first use, null until the frontend is built
+
+    @Autowired
+    public PageSnapshotService(PostService postService, TagService tagService, ObjectMapper objectMapper,
+                               ResourceLoader resourceLoader, LruCache<String, PageSnapshot> pageCache) {
+        this.postService = postService;
+        this.tagService = tagService;
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+        this.pageCache = pageCache;
+    }
+
+    /**
+     * the page without any data, for routes that load their own
+     *
+     * @return page, null if there is no frontend build
+     */
+    public PageSnapshot renderShell() {
+        String html = getTemplate();
+        return html == null ? null : snapshot(html);
+    }
+
+    /**
+     * first page of the feed with all tags
+     *
+     * @return page, null if there is no frontend build
+     */
+    public PageSnapshot renderHome() {
+        if (getTemplate() == null) {
+            return null;
+        }
+        return pageCache.getOrLoad(HOME_KEY, key -> {
+            PageInfo<PostSummary> posts = postService.getPosts("", 0, 1, HOME_PAGE_SIZE);
+            List<Tag> tags = tagService.getTags();
+
+            StringBuilder markup = new StringBuilder("<div class=\"container-fluid\"><div class=\"row g-5\">");
+            for (PostSummary post : posts.getList()) {
+                markup.append("<div class=\"col-lg-6\"><div class=\"card mb-3\"><div class=\"card-body\">");
+                markup.append("<h3 class=\"card-title text-truncate\"><a href=\"/viewPost/").append(post.getId()).append("\">")
+                        .append(escape(post.getTitle())).append("</a></h3>");
+                markup.append("<p class=\"card-text\">").append(escape(post.getExcerpt())).append("</p>");
+                markup.append("<p class=\"card-text\"><small class=\"text-body-secondary\">Author: ")
+                        .append(escape(post.getUser().getUsername())).append("</small></p>");
+                markup.append("</div></div></div>");
+            }
+            markup.append("</div></div>");
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("path", "/");
+            data.put("posts", posts);
+            data.put("tags", tags);
+            return render(null, markup.toString(), data);
+        });
+    }
+
+    /**
+     * page of a post
+     *
+     * @param postId post id
+     * @return page, the shell if the post doesn't exist, null if there is no frontend build
+     */
+    public PageSnapshot renderPost(int postId) {
+        if (getTemplate() == null) {
+            return null;
+        }
+        Post post = postService.getPostById(postId);
+        if (post == null) {
+            // the app shows the not found case
+            return renderShell();
+        }
+        // the version in the key keeps a page rendered from an outdated post from being served,
+        // updated_at has one second precision and two edits within a second would share it
+        String key = "post:" + postId + ":" + post.getVersion();
+        return pageCache.getOrLoad(key, k -> {
+            StringBuilder markup = new StringBuilder("<div class=\"container\"><article>");
+            markup.append("<h2 class=\"display-5 link-body-emphasis mb-1\">").append(escape(post.getTitle())).append("</h2>");
+            markup.append("<p class=\"blog-post-meta\">")
+                    .append(new SimpleDateFormat("yyyy-M-d H:m:s").format(post.getCreatedAt()))
+                    .append(" by <strong>").append(escape(post.getUser().getUsername())).append("</strong></p>");
+            if (post.getImage() != null && !post.getImage().isEmpty()) {
+                markup.append("<p><img src=\"/api/files/").append(escape(post.getImage()))
+                        .append("\" class=\"d-block mx-auto img-fluid object-fit-scale\" alt=\"post\" style=\"width: 700px; height: 500px\"></p>");
+            }
+            markup.append("<p>").append(escape(post.getContent())).append("</p>");
+            markup.append("</article></div>");
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("path", "/viewPost/" + postId);
+            data.put("post", post);
+            return render(post.getTitle(), markup.toString(), data);
+        });
+    }
+
+    @EventListener
+    public void onPostChanged(PostChangedEvent event) {
+        if (event.postId() == 0) {
+            // e.g. an author was renamed
+            pageCache.invalidateAll();
+        } else {
+            // the post's own pages are keyed by version, only the feed may show it
+            pageCache.invalidate(HOME_KEY);
+        }
+    }
+
+    private PageSnapshot render(String title, String markup, Map<String, Object> data) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize page data", e);
+        }
+        // keep the data from closing the script element
+        json = json.replace("<", "\\u003c").replace(">", "\\u003e").replace("&", "\\u0026")
+                .replace("\u2028", "\\u2028").replace("\u2029", "\\u2029");
+
+        String html = getTemplate().replace(ROOT_ELEMENT,
+                "<div id=\"root\">" + markup + "</div><script>window.__INITIAL_DATA__=" + json + "</script>");
+        if (title != null) {
+            html = html.replace(TITLE_ELEMENT, "<title>" + escape(title) + " - Blog</title>");
+        }
+        return snapshot(html);
+    }
+
+    private static PageSnapshot snapshot(String html) {
+        String eTag = "W/\"" + DigestUtils.md5DigestAsHex(html.getBytes(StandardCharsets.UTF_8)) + "\"";
+        return new PageSnapshot(html, eTag);
+    }
+
+    private static String escape(String text) {
+        return text == null ? "" : HtmlUtils.htmlEscape(text);
+    }
+
+    private String getTemplate() {
+        String current = template;
+        if (current == null) {
+            Resource resource = resourceLoader.getResource(TEMPLATE_LOCATION);
+            if (!resource.exists()) {
+                return null;
+            }
+            try (InputStream inputStream = resource.getInputStream()) {
+                current = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                logger.warn("Failed to read {}", TEMPLATE_LOCATION, e);
+                return null;
+            }
+            if (!current.contains(ROOT_ELEMENT)) {
+                logger.warn("{} has no {}, pages won't be rendered on the server", TEMPLATE_LOCATION, ROOT_ELEMENT);
+            }
+            template = current;
+        }
+        return current;
+    }
+
+}
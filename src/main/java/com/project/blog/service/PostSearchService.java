@@ -0,0 +1,276 @@
+package com.project.blog.service;
+
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.pojo.Post;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * in-memory inverted index over post title and content, ranked with BM25
+ */
+@Service
+public class PostSearchService {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_WEIGHT = 2; // a title term counts as much as two content terms
+    // a shorter trailing term is matched whole, a one or two letter prefix would expand to most of the vocabulary
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    private final PostMapper postMapper;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // term -> (post id -> term frequency)
+    private final NavigableMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    // post id -> (term -> term frequency), used to remove a post's old postings
+    private final Map<Integer, Map<String, Integer>> documents = new HashMap<>();
+    // post id -> weighted number of terms
+    private final Map<Integer, Integer> documentLengths = new HashMap<>();
+    private long totalLength;
+    private volatile boolean ready;
+
+    @Autowired
+    public PostSearchService(PostMapper postMapper) {
+        this.postMapper = postMapper;
+    }
+
+    /**
+     * build the index from every post in the database. posts are read under the write lock,
+     * so a post saved meanwhile is indexed after the build instead of being cleared by it.
+     * searches don't wait, they don't use the index until it is ready
+     */
+    public void init() {
+        lock.writeLock().lock();
+        try {
+            List<Post> posts = postMapper.findAllForSearchIndex();
+            postings.clear();
+            documents.clear();
+            documentLengths.clear();
+            totalLength = 0;
+            for (Post post : posts) {
+                add(post);
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * add or replace a post in the index
+     *
+     * @param post post with id, title and content
+     */
+    public void index(Post post) {
+        lock.writeLock().lock();
+        try {
+            delete(post.getId());
+            add(post);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * add or replace posts in the index, taking the lock once
+     *
+     * @param posts posts with id, title and content
+     */
+    public void indexAll(Collection<Post> posts) {
+        lock.writeLock().lock();
+        try {
+            for (Post post : posts) {
+                delete(post.getId());
+                add(post);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int postId) {
+        lock.writeLock().lock();
+        try {
+            delete(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * find the posts containing every term of the query, the last term is matched as a prefix
+     * of at least MIN_PREFIX_LENGTH characters so results keep up while the user is typing
+     *
+     * @param query search text
+     * @return matching post ids, best match first
+     */
+    public List<Integer> search(String query) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            if (documentCount == 0) {
+                return new ArrayList<>();
+            }
+            double averageLength = (double) totalLength / documentCount;
+
+            List<Collection<Map<Integer, Integer>>> termPostings = new ArrayList<>(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                String term = terms.get(i);
+                termPostings.add(i == terms.size() - 1 ? prefixPostings(term) : singlePostings(term));
+            }
+            // intersect starting from the rarest term so the candidate set shrinks as fast as possible
+            termPostings.sort(Comparator.comparingInt(PostSearchService::postingCount));
+
+            Map<Integer, Double> scores = null;
+            for (Collection<Map<Integer, Integer>> group : termPostings) {
+                Map<Integer, Double> termScores = new HashMap<>();
+                for (Map<Integer, Integer> posting : group) {
+                    double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                    if (scores == null) {
+                        for (Map.Entry<Integer, Integer> entry : posting.entrySet()) {
+                            termScores.merge(entry.getKey(), score(idf, entry.getValue(), entry.getKey(), averageLength), Double::sum);
+                        }
+                    } else {
+                        // every term must match, so only look up the remaining candidates
+                        for (Map.Entry<Integer, Double> candidate : scores.entrySet()) {
+                            Integer frequency = posting.get(candidate.getKey());
+                            if (frequency != null) {
+                                termScores.merge(candidate.getKey(), score(idf, frequency, candidate.getKey(), averageLength), Double::sum);
+                            }
+                        }
+                    }
+                }
+
+                if (scores != null) {
+                    for (Map.Entry<Integer, Double> entry : termScores.entrySet()) {
+                        entry.setValue(entry.getValue() + scores.get(entry.getKey()));
+                    }
+                }
+                scores = termScores;
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+
+            List<Map.Entry<Integer, Double>> ranked = new ArrayList<>(scores.entrySet());
+            // highest score first, newest post first on ties
+            ranked.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed()));
+            List<Integer> postIds = new ArrayList<>(ranked.size());
+            for (Map.Entry<Integer, Double> entry : ranked) {
+                postIds.add(entry.getKey());
+            }
+            return postIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * split text into lowercase terms on anything that isn't a letter or digit,
+     * CJK ideographs have no word separators so each one is a term of its own
+     */
+    private static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        String lower = text.toLowerCase();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i < lower.length(); ) {
+            int codePoint = lower.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isIdeographic(codePoint)) {
+                addTerm(terms, term);
+                terms.add(new String(Character.toChars(codePoint)));
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                term.appendCodePoint(codePoint);
+            } else {
+                addTerm(terms, term);
+            }
+        }
+        addTerm(terms, term);
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, StringBuilder term) {
+        if (term.length() > 0) {
+            terms.add(term.toString());
+            term.setLength(0);
+        }
+    }
+
+    private void add(Post post) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : tokenize(post.getTitle())) {
+            frequencies.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(post.getContent())) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new HashMap<>()).put(post.getId(), entry.getValue());
+            length += entry.getValue();
+        }
+        documents.put(post.getId(), frequencies);
+        documentLengths.put(post.getId(), length);
+        totalLength += length;
+    }
+
+    private void delete(int postId) {
+        Map<String, Integer> frequencies = documents.remove(postId);
+        if (frequencies == null) {
+            return;
+        }
+        totalLength -= documentLengths.remove(postId);
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Map<Integer, Integer> posting = postings.get(entry.getKey());
+            posting.remove(postId);
+            if (posting.isEmpty()) {
+                postings.remove(entry.getKey());
+            }
+        }
+    }
+
+    private double score(double idf, int frequency, int postId, double averageLength) {
+        int length = documentLengths.get(postId);
+        return idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+    }
+
+    private static int postingCount(Collection<Map<Integer, Integer>> group) {
+        int count = 0;
+        for (Map<Integer, Integer> posting : group) {
+            count += posting.size();
+        }
+        return count;
+    }
+
+    private Collection<Map<Integer, Integer>> singlePostings(String term) {
+        Map<Integer, Integer> posting = postings.get(term);
+        return posting == null ? List.of() : List.of(posting);
+    }
+
+    private Collection<Map<Integer, Integer>> prefixPostings(String prefix) {
+        if (prefix.length() < MIN_PREFIX_LENGTH) {
+            return singlePostings(prefix);
+        }
+        // every term with the prefix, leaving some out would drop matches and make the total wrong
+        return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+}
@@ -1,52 +1,234 @@
 package com.project.blog.service;
 
+import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import com.project.blog.cache.LruCache;
+import com.project.blog.event.PostChangedEvent;
 import com.project.blog.mapper.PostMapper;
 import com.project.blog.mapper.TagMapper;
 import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.CursorPage;
 import com.project.blog.pojo.Post;
+import com.project.blog.pojo.PostSummary;
+import com.project.blog.pojo.PostTag;
 import com.project.blog.pojo.Tag;
 import com.project.blog.pojo.UserBean;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.IntUnaryOperator;
 
 @Service
 public class PostService {
 
+    public static final int ANY_VERSION = -1;
+
+    private static final int EXCERPT_LENGTH = 200; // characters, fits the excerpt column
+    private static final int WORDS_PER_MINUTE = 200;
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
     private final PostMapper postMapper;
     private final TagMapper tagMapper;
     private final UserMapper userMapper;
 
     private final StorageService storageService;
+    private final PostSearchService postSearchService;
+    private final PostTagIndexService postTagIndexService;
+    private final TagService tagService;
+    private final CurrentUserService currentUserService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final StorageCleanupService storageCleanupService;
+    private final LruCache<Integer, Post> postCache; // fully loaded posts by id
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public PostService(PostMapper postMapper, TagMapper tagMapper, UserMapper userMapper, StorageService storageService) {
+    public PostService(PostMapper postMapper, TagMapper tagMapper, UserMapper userMapper, StorageService storageService,
+                       PostSearchService postSearchService, PostTagIndexService postTagIndexService, TagService tagService, CurrentUserService currentUserService,
+                       ImageDerivativeService imageDerivativeService, StorageCleanupService storageCleanupService,
+                       LruCache<Integer, Post> postCache, ApplicationEventPublisher eventPublisher) {
         this.postMapper = postMapper;
         this.tagMapper = tagMapper;
         this.userMapper = userMapper;
         this.storageService = storageService;
+        this.postSearchService = postSearchService;
+        this.postTagIndexService = postTagIndexService;
+        this.tagService = tagService;
+        this.currentUserService = currentUserService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.storageCleanupService = storageCleanupService;
+        this.postCache = postCache;
+        this.eventPublisher = eventPublisher;
     }
 
-    public PageInfo<Post> getPosts(String search, int tagId, int page, int pageSize) {
+    public PageInfo<PostSummary> getPosts(String search, int tagId, int page, int pageSize) {
+        if (!search.isBlank() && postSearchService.isReady()) {
+            // ranked search through the in-memory index
+            return searchPosts(search, tagId, page, pageSize);
+        }
+        if (search.isBlank() && tagId != 0 && postTagIndexService.isReady()) {
+            // page and count straight from the tag's post ids
+            return getPostsByTag(tagId, page, pageSize);
+        }
+        // no filter, or an index is still being built at startup
         PageHelper.startPage(page, pageSize);
-        List<Post> posts = postMapper.findAll(search, tagId);
+        List<PostSummary> posts = postMapper.findAll(search, tagId);
+        loadUsersAndTags(posts);
         return new PageInfo<>(posts);
     }
 
+    private PageInfo<PostSummary> searchPosts(String search, int tagId, int page, int pageSize) {
+        List<Integer> postIds = postSearchService.search(search);
+        if (tagId != 0) {
+            retainTagged(postIds, tagId);
+        }
+        return getPage(page, pageSize, postIds.size(), postIds::get);
+    }
+
+    private PageInfo<PostSummary> getPostsByTag(int tagId, int page, int pageSize) {
+        // ascending, read from the end for newest first
+        int[] postIds = postTagIndexService.getPostIds(tagId);
+        return getPage(page, pageSize, postIds.length, index -> postIds[postIds.length - 1 - index]);
+    }
+
+    /**
+     * load a page of posts whose ids are already known and ordered
+     *
+     * @param total    number of posts
+     * @param postIdAt id of the post at a position
+     */
+    private PageInfo<PostSummary> getPage(int page, int pageSize, int total, IntUnaryOperator postIdAt) {
+        // same paging rules as PageHelper with pagehelper.reasonable=true
+        Page<PostSummary> posts = new Page<>(page, pageSize);
+        posts.setReasonable(true);
+        posts.setTotal(total);
+        int from = (int) Math.min(posts.getStartRow(), total);
+        int to = (int) Math.min(posts.getEndRow(), total);
+        List<Integer> pagePostIds = new ArrayList<>(to - from);
+        for (int index = from; index < to; index++) {
+            pagePostIds.add(postIdAt.applyAsInt(index));
+        }
+
+        if (!pagePostIds.isEmpty()) {
+            Map<Integer, PostSummary> postsById = new HashMap<>();
+            for (PostSummary post : postMapper.findByIds(pagePostIds)) {
+                postsById.put(post.getId(), post);
+            }
+            for (int postId : pagePostIds) {
+                // keep ranking or id order
+                PostSummary post = postsById.get(postId);
+                if (post != null) {
+                    posts.add(post);
+                }
+            }
+            loadUsersAndTags(posts);
+        }
+        return new PageInfo<>(posts);
+    }
+
+    /**
+     * get the posts older than the cursor, newest first. unlike getPosts there is no count query
+     * and a page isn't shifted by posts inserted meanwhile
+     *
+     * @param search   search text
+     * @param tagId    tag id, 0 for all tags
+     * @param after    cursor returned with the previous page, empty for the first page
+     * @param pageSize number of posts
+     * @return page of posts with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    public CursorPage<PostSummary> getPostsAfter(String search, int tagId, String after, int pageSize) {
+        int afterId = decodeCursor(after);
+        int limit = Math.max(pageSize, 1);
+
+        List<PostSummary> posts;
+        if (!search.isBlank() && postSearchService.isReady()) {
+            // search results in id order instead of ranking order, so the cursor stays valid
+            List<Integer> postIds = postSearchService.search(search);
+            if (tagId != 0) {
+                retainTagged(postIds, tagId);
+            }
+            postIds.removeIf(postId -> afterId != 0 && postId >= afterId);
+            postIds.sort(Comparator.reverseOrder());
+            List<Integer> pagePostIds = postIds.subList(0, Math.min(limit + 1, postIds.size()));
+            posts = pagePostIds.isEmpty() ? new ArrayList<>() : postMapper.findByIds(pagePostIds);
+            posts.sort(Comparator.comparingInt(PostSummary::getId).reversed());
+        } else if (search.isBlank() && tagId != 0 && postTagIndexService.isReady()) {
+            int[] postIds = postTagIndexService.getPostIds(tagId);
+            // posts older than the cursor end right before where its id is or would be
+            int end = afterId == 0 ? postIds.length : Arrays.binarySearch(postIds, afterId);
+            if (end < 0) {
+                end = -end - 1;
+            }
+            List<Integer> pagePostIds = new ArrayList<>();
+            for (int index = end - 1; index >= 0 && pagePostIds.size() <= limit; index--) {
+                pagePostIds.add(postIds[index]);
+            }
+            posts = pagePostIds.isEmpty() ? new ArrayList<>() : postMapper.findByIds(pagePostIds);
+            posts.sort(Comparator.comparingInt(PostSummary::getId).reversed());
+        } else {
+            // fetch one more post to know if there is a next page
+            posts = postMapper.findAfter(search, tagId, afterId, limit + 1);
+        }
+
+        CursorPage<PostSummary> page = new CursorPage<>();
+        page.setHasNextPage(posts.size() > limit);
+        if (page.isHasNextPage()) {
+            posts = new ArrayList<>(posts.subList(0, limit));
+            page.setNextCursor(encodeCursor(posts.get(posts.size() - 1).getId()));
+        }
+        loadUsersAndTags(posts);
+        page.setList(posts);
+        return page;
+    }
+
+    /**
+     * get a post from the cache, loading it from the database on a miss.
+     * the returned post is shared, don't modify it
+     *
+     * @param postId post id
+     * @return post, null if it doesn't exist
+     */
     public Post getPostById(int postId) {
-        return postMapper.findById(postId);
+        return postCache.getOrLoad(postId, postMapper::findById);
     }
 
+    /**
+     * drop every cached post, e.g. after an author changed their username
+     */
+    public void evictCachedPosts() {
+        postCache.invalidateAll();
+        eventPublisher.publishEvent(new PostChangedEvent(0));
+    }
+
+    /**
+     * compute the summary of posts saved before summaries existed
+     */
+    public void backfillSummaries() {
+        List<Post> posts;
+        do {
+            posts = postMapper.findWithoutSummary(BACKFILL_BATCH_SIZE);
+            for (Post post : posts) {
+                summarize(post);
+                postMapper.updateSummary(post);
+            }
+        } while (posts.size() == BACKFILL_BATCH_SIZE);
+    }
+
+    @Transactional
     public boolean insertPost(String title, String content, MultipartFile image, String tags) {
         Post post = new Post();
         post.setTitle(title.trim());
         post.setContent(content.trim());
+        summarize(post);
 
         if (!image.isEmpty()) {
             // image isn't empty
@@ -54,10 +236,7 @@ public class PostService {
         }
 
         // set author
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        String username = authentication.getName();
-        UserBean user = userMapper.findByUsername(username);
-        post.setUser(user);
+        post.setUser(currentUserService.getCurrentUser());
         // set current time
         Date now = new Date();
         post.setCreatedAt(now);
@@ -66,91 +245,306 @@ public class PostService {
         if (result) {
             // insert success
             updateTags(post.getId(), tags);
+            afterCommit(() -> {
+                postSearchService.index(post);
+                eventPublisher.publishEvent(new PostChangedEvent(post.getId()));
+            });
         }
         return result;
     }
 
-    public boolean updatePost(int postId, String title, String content, MultipartFile image, String tags) {
+    /**
+     * update a post and its tags. the post row is only written if it is still at the version the update is based on,
+     * so of concurrent editors one wins and the others fail right away instead of overwriting each other
+     *
+     * @param postId  post id
+     * @param version version the editor last read, ANY_VERSION for the version read here
+     * @throws OptimisticLockingFailureException if the post changed since that version
+     */
+    @Transactional
+    public boolean updatePost(int postId, int version, String title, String content, MultipartFile image, String tags) {
         Post post = postMapper.findById(postId);
+        if (version != ANY_VERSION && post.getVersion() != version) {
+            // stale before anything is written
+            throw new OptimisticLockingFailureException("Post " + postId + " is no longer at version " + version);
+        }
         post.setTitle(title.trim());
         post.setContent(content.trim());
+        summarize(post);
 
         String oldImageName = post.getImage();
         if (!image.isEmpty()) {
             post.setImage(uploadImage(image));
-
-            if (oldImageName != null && !oldImageName.equals("")) {
-                deleteImage(oldImageName);
-            }
         }
 
         // set current time
         Date now = new Date();
         post.setUpdatedAt(now);
-        boolean result = postMapper.update(post) > 0;
-        if (result) {
-            // update success
-            updateTags(postId, tags);
+        if (postMapper.update(post) == 0) {
+            // another update committed since the post was read, rolling back also removes an uploaded image
+            throw new OptimisticLockingFailureException("Post " + postId + " is no longer at version " + post.getVersion());
         }
-        return result;
+        // the row stays locked until commit, so the tags can't interleave with another update
+        post.setVersion(post.getVersion() + 1);
+        if (!image.isEmpty() && oldImageName != null && !oldImageName.equals("")) {
+            // the old image is only deleted once the new one is committed
+            deleteImage(oldImageName);
+        }
+        updateTags(postId, tags);
+        afterCommit(() -> {
+            postSearchService.index(post);
+            postCache.invalidate(postId);
+            eventPublisher.publishEvent(new PostChangedEvent(postId));
+        });
+        return true;
     }
 
+    @Transactional
     public boolean deletePost(int postId) {
         Post post = postMapper.findById(postId);
-        if (post.getImage() != null && !post.getImage().equals("")) {
+        List<Integer> deletedTagIds = postMapper.findPostTagIdsByPostId(postId);
+        postMapper.deletePostTagByPostId(postId);
+        deleteUnusedTags(deletedTagIds);
+        boolean result = postMapper.delete(postId) > 0;
+        if (result && post.getImage() != null && !post.getImage().equals("")) {
+            // delete success
             deleteImage(post.getImage());
         }
-        deleteTagByTagIds(deletePostTag(postId));
-        return postMapper.delete(postId) > 0;
+        afterCommit(() -> {
+            if (!deletedTagIds.isEmpty()) {
+                tagService.invalidate();
+            }
+            postTagIndexService.update(postId, deletedTagIds, List.of());
+            if (result) {
+                // delete success
+                postSearchService.remove(postId);
+            }
+            postCache.invalidate(postId);
+            eventPublisher.publishEvent(new PostChangedEvent(postId));
+        });
+        return result;
     }
 
+    /**
+     * set the tags of a post with a fixed number of statements however many tags there are:
+     * existing tags are resolved in one query, missing ones created in one insert and read back in another,
+     * and only the difference to the current tags is written to post_tag
+     *
+     * @param postId post id
+     * @param tags   tag names separated by space
+     */
     private void updateTags(int postId, String tags) {
-        List<Integer> deletedTagIds = deletePostTag(postId);
-
-        String[] tagNames = tags.trim().toLowerCase().split(" ");
-        Set<String> tagNameSet = new HashSet<>(Arrays.asList(tagNames)); // remove duplicate; time complexity: O(n)
-//        tagNames = Arrays.stream(tagNames).distinct().toArray(String[]::new); time complexity: O(n log(n))
-        for (String tagName : tagNameSet) {
-            if(tagName.equals(""))
-                // eliminate empty string
-                continue;
-            Tag tag = tagMapper.findByName(tagName);
-            if (tag != null) {
-                // tag exists, insert to post_tag
-                postMapper.insertPostTag(postId, tag.getId());
+        Set<String> tagNames = new LinkedHashSet<>(Arrays.asList(tags.trim().toLowerCase().split(" "))); // remove duplicate
+        tagNames.remove(""); // eliminate empty string
+
+        // by id: names the database compares as equal, e.g. cafe and café, resolve to the same tag
+        Map<Integer, Tag> postTagsById = new LinkedHashMap<>();
+        if (!tagNames.isEmpty()) {
+            Set<String> foundKeys = new HashSet<>();
+            for (Tag tag : tagMapper.findByNames(tagNames)) {
+                postTagsById.putIfAbsent(tag.getId(), tag);
+                foundKeys.add(TagService.nameKey(tag.getName()));
+            }
+            Set<String> missingTagNames = new LinkedHashSet<>();
+            for (String tagName : tagNames) {
+                if (!foundKeys.contains(TagService.nameKey(tagName))) {
+                    missingTagNames.add(tagName);
+                }
+            }
+            if (!missingTagNames.isEmpty()) {
+                // tags don't exist, create them. a concurrent save may create the same ones,
+                // so duplicates are skipped and the ids are read back instead of failing on the unique name
+                tagMapper.insertMissing(missingTagNames);
+                for (Tag tag : tagMapper.findByNamesForUpdate(missingTagNames)) {
+                    postTagsById.putIfAbsent(tag.getId(), tag);
+                }
+            }
+        }
+        Collection<Tag> postTags = postTagsById.values();
+
+        Set<Integer> oldTagIds = new HashSet<>(postMapper.findPostTagIdsByPostId(postId));
+        Set<Integer> newTagIds = new HashSet<>();
+        List<Integer> addedTagIds = new ArrayList<>();
+        for (Tag tag : postTags) {
+            newTagIds.add(tag.getId());
+            if (!oldTagIds.contains(tag.getId())) {
+                addedTagIds.add(tag.getId());
+            }
+        }
+        List<Integer> removedTagIds = new ArrayList<>();
+        for (int tagId : oldTagIds) {
+            if (!newTagIds.contains(tagId)) {
+                removedTagIds.add(tagId);
+            }
+        }
+
+        if (!removedTagIds.isEmpty()) {
+            postMapper.deletePostTags(postId, removedTagIds);
+            deleteUnusedTags(removedTagIds);
+        }
+        if (!addedTagIds.isEmpty()) {
+            postMapper.insertPostTags(postId, addedTagIds);
+        }
+
+        afterCommit(() -> {
+            if (!removedTagIds.isEmpty() || !addedTagIds.isEmpty()) {
+                tagService.invalidate();
+            }
+            postTagIndexService.update(postId, removedTagIds, addedTagIds);
+        });
+    }
+
+    /**
+     * keep only the posts that have the tag, looked up in the tag index once it's built
+     *
+     * @param postIds post ids, filtered in place
+     * @param tagId   tag id
+     */
+    private void retainTagged(List<Integer> postIds, int tagId) {
+        if (postTagIndexService.isReady()) {
+            int[] taggedPostIds = postTagIndexService.getPostIds(tagId);
+            postIds.removeIf(postId -> Arrays.binarySearch(taggedPostIds, postId) < 0);
+        } else {
+            Set<Integer> taggedPostIds = new HashSet<>(postMapper.findPostIdsByTagId(tagId));
+            postIds.removeIf(postId -> !taggedPostIds.contains(postId));
+        }
+    }
+
+    /**
+     * delete the tags that aren't associated with any post anymore
+     *
+     * @param tagIds ids of tags that were just removed from a post
+     */
+    private void deleteUnusedTags(List<Integer> tagIds) {
+        if (!tagIds.isEmpty()) {
+            tagMapper.deleteUnused(tagIds);
+        }
+    }
+
+    /**
+     * set excerpt, word count and read time from the content. runs of letters and digits are words,
+     * each CJK ideograph counts as a word since those texts have no separators
+     *
+     * @param post post with content
+     */
+    static void summarize(Post post) {
+        String content = post.getContent();
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < content.length(); ) {
+            int codePoint = content.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.isIdeographic(codePoint)) {
+                words++;
+                inWord = false;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                if (!inWord) {
+                    words++;
+                }
+                inWord = true;
             } else {
-                // tag doesn't exist, create it
-                Tag newTag = new Tag();
-                newTag.setName(tagName);
-                tagMapper.insert(newTag);
-                postMapper.insertPostTag(postId, newTag.getId());
+                inWord = false;
+            }
+        }
+
+        String excerpt = content.replaceAll("\\s+", " ").trim();
+        if (excerpt.codePointCount(0, excerpt.length()) > EXCERPT_LENGTH) {
+            int end = excerpt.offsetByCodePoints(0, EXCERPT_LENGTH - 1);
+            int space = excerpt.lastIndexOf(' ', end);
+            if (space > end / 2) {
+                // don't cut a word in half
+                end = space;
             }
+            excerpt = excerpt.substring(0, end) + "\u2026";
         }
 
-        deleteTagByTagIds(deletedTagIds);
+        post.setExcerpt(excerpt);
+        post.setWordCount(words);
+        post.setReadTime(Math.max(1, (words + WORDS_PER_MINUTE - 1) / WORDS_PER_MINUTE));
     }
 
-    private List<Integer> deletePostTag(int postId) {
-        List<Integer> deletedTagIds = postMapper.findPostTagIdsByPostId(postId);
-        postMapper.deletePostTagByPostId(postId);
-        return deletedTagIds;
+    private static String encodeCursor(int postId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(postId).getBytes(StandardCharsets.UTF_8));
     }
 
-    private void deleteTagByTagIds(List<Integer> tagIds) {
-        for (int tagId : tagIds) {
-            if (postMapper.getPostTagCountByTagId(tagId) == 0) {
-                // the tag isn't associated with any post, delete it
-                tagMapper.delete(tagId);
+    private static int decodeCursor(String cursor) {
+        if (cursor.isEmpty()) {
+            // first page
+            return 0;
+        }
+        try {
+            int postId = Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (postId <= 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
             }
+            return postId;
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    /**
+     * run an action once the current transaction has committed, or right away without a transaction,
+     * so in-memory state never reflects a write that was rolled back
+     *
+     * @param action action to run
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * load authors and tags of a page of posts with one query each,
+     * instead of two nested selects per post
+     *
+     * @param posts posts with only user id set
+     */
+    private void loadUsersAndTags(List<PostSummary> posts) {
+        if (posts.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> userIds = new HashSet<>();
+        Map<Integer, List<Tag>> tagsByPostId = new HashMap<>();
+        for (PostSummary post : posts) {
+            userIds.add(post.getUser().getId());
+            tagsByPostId.put(post.getId(), new ArrayList<>());
+        }
+
+        Map<Integer, UserBean> usersById = new HashMap<>();
+        for (UserBean user : userMapper.findByIds(userIds)) {
+            usersById.put(user.getId(), user);
+        }
+        for (PostTag postTag : tagMapper.findByPostIds(tagsByPostId.keySet())) {
+            tagsByPostId.get(postTag.getPostId()).add(postTag.getTag());
+        }
+
+        for (PostSummary post : posts) {
+            post.setUser(usersById.get(post.getUser().getId()));
+            post.setTags(tagsByPostId.get(post.getId()));
         }
     }
 
     private String uploadImage(MultipartFile image) {
-        return storageService.store(image);
+        String imageName = storageService.store(image);
+        // a stored image is orphaned if the post isn't saved
+        storageCleanupService.deleteAfterRollback(imageName);
+        afterCommit(() -> imageDerivativeService.generate(imageName));
+        return imageName;
     }
 
     private void deleteImage(String imageName) {
-        storageService.delete(imageName);
+        storageCleanupService.deleteAfterCommit(imageName);
     }
 
 }
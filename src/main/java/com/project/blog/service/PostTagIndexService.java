@@ -0,0 +1,149 @@
+package com.project.blog.service;
+
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.pojo.PostTag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * in-memory index of the posts of each tag as sorted int arrays, so a tag's page of posts and its count
+ * are read without joining post_tag. an array is replaced on change and never modified, readers don't lock
+ */
+@Service
+public class PostTagIndexService {
+
+    private static final int[] NO_POSTS = new int[0];
+
+    private final PostMapper postMapper;
+
+    // tag id -> ids of its posts in ascending order, replaced as a whole when the index is rebuilt
+    private volatile Map<Integer, int[]> postIdsByTagId = new ConcurrentHashMap<>();
+    // writers take turns copying and replacing arrays. init reads the rows while holding it, so an update during the build isn't lost
+    private final Lock lock = new ReentrantLock();
+    private volatile boolean ready;
+
+    @Autowired
+    public PostTagIndexService(PostMapper postMapper) {
+        this.postMapper = postMapper;
+    }
+
+    /**
+     * build the index from every post_tag row in the database
+     */
+    public void init() {
+        lock.lock();
+        try {
+            Map<Integer, int[]> index = new ConcurrentHashMap<>();
+            addPostTags(index, postMapper.findAllPostTags());
+            postIdsByTagId = index;
+            ready = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * get the posts of a tag
+     *
+     * @param tagId tag id
+     * @return post ids in ascending order, empty if the tag has no post. shared, don't modify it
+     */
+    public int[] getPostIds(int tagId) {
+        return postIdsByTagId.getOrDefault(tagId, NO_POSTS);
+    }
+
+    /**
+     * apply a change of the tags of a post
+     *
+     * @param postId        post id
+     * @param removedTagIds ids of tags the post no longer has
+     * @param addedTagIds   ids of tags the post now has
+     */
+    public void update(int postId, Collection<Integer> removedTagIds, Collection<Integer> addedTagIds) {
+        lock.lock();
+        try {
+            for (int tagId : removedTagIds) {
+                int[] postIds = postIdsByTagId.get(tagId);
+                int index = postIds == null ? -1 : Arrays.binarySearch(postIds, postId);
+                if (index >= 0) {
+                    if (postIds.length == 1) {
+                        // the tag is deleted with its last post
+                        postIdsByTagId.remove(tagId);
+                    } else {
+                        int[] remaining = new int[postIds.length - 1];
+                        System.arraycopy(postIds, 0, remaining, 0, index);
+                        System.arraycopy(postIds, index + 1, remaining, index, remaining.length - index);
+                        postIdsByTagId.put(tagId, remaining);
+                    }
+                }
+            }
+            for (int tagId : addedTagIds) {
+                postIdsByTagId.put(tagId, merge(postIdsByTagId.get(tagId), new int[]{postId}));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * add the tags of newly inserted posts, each tag's array is copied once however many posts it gets
+     *
+     * @param postTags post_tag rows with post id and tag id
+     */
+    public void addAll(Collection<PostTag> postTags) {
+        lock.lock();
+        try {
+            addPostTags(postIdsByTagId, postTags);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void addPostTags(Map<Integer, int[]> index, Collection<PostTag> postTags) {
+        Map<Integer, List<Integer>> addedPostIds = new HashMap<>();
+        for (PostTag postTag : postTags) {
+            addedPostIds.computeIfAbsent(postTag.getTag().getId(), k -> new ArrayList<>()).add(postTag.getPostId());
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : addedPostIds.entrySet()) {
+            int[] postIds = new int[entry.getValue().size()];
+            for (int i = 0; i < postIds.length; i++) {
+                postIds[i] = entry.getValue().get(i);
+            }
+            Arrays.sort(postIds);
+            index.put(entry.getKey(), merge(index.get(entry.getKey()), postIds));
+        }
+    }
+
+    /**
+     * merge two ascending arrays into a new one without duplicates
+     */
+    private static int[] merge(int[] postIds, int[] addedPostIds) {
+        if (postIds == null) {
+            postIds = NO_POSTS;
+        }
+        int[] merged = new int[postIds.length + addedPostIds.length];
+        int i = 0, j = 0, length = 0;
+        while (i < postIds.length || j < addedPostIds.length) {
+            int next;
+            if (j == addedPostIds.length || (i < postIds.length && postIds[i] <= addedPostIds[j])) {
+                next = postIds[i++];
+            } else {
+                next = addedPostIds[j++];
+            }
+            if (length == 0 || merged[length - 1] != next) {
+                merged[length++] = next;
+            }
+        }
+        return length == merged.length ? merged : Arrays.copyOf(merged, length);
+    }
+
+}
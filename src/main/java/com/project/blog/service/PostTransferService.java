@@ -0,0 +1,238 @@
+package com.project.blog.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.project.blog.event.PostChangedEvent;
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.mapper.TagMapper;
+import com.project.blog.pojo.ArchivedPost;
+import com.project.blog.pojo.ImportResult;
+import com.project.blog.pojo.Post;
+import com.project.blog.pojo.PostTag;
+import com.project.blog.pojo.Tag;
+import com.project.blog.pojo.UserBean;
+import org.apache.ibatis.cursor.Cursor;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * bulk export and import of posts as newline delimited json, one ArchivedPost per line.
+ * neither side holds more than one batch of posts in memory
+ */
+@Service
+public class PostTransferService {
+
+    private static final int TITLE_MAX_LENGTH = 255;
+    private static final int CONTENT_MAX_BYTES = 65_535; // mysql TEXT
+
+    private final PostMapper postMapper;
+    private final SqlSessionTemplate batchSqlSessionTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final PostSearchService postSearchService;
+    private final PostTagIndexService postTagIndexService;
+    private final TagService tagService;
+    private final CurrentUserService currentUserService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+
+    @Autowired
+    public PostTransferService(PostMapper postMapper,
+                               @Qualifier("batchSqlSessionTemplate") SqlSessionTemplate batchSqlSessionTemplate,
+                               PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                               PostSearchService postSearchService, PostTagIndexService postTagIndexService, TagService tagService,
+                               CurrentUserService currentUserService, ApplicationEventPublisher eventPublisher,
+                               @Value("${blog.import.batch-size:500}") int batchSize) {
+        this.postMapper = postMapper;
+        this.batchSqlSessionTemplate = batchSqlSessionTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.postSearchService = postSearchService;
+        this.postTagIndexService = postTagIndexService;
+        this.tagService = tagService;
+        this.currentUserService = currentUserService;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * write every post with its author and tags, oldest first
+     *
+     * @param outputStream where to write, left open
+     * @throws IOException if writing fails
+     */
+    public void exportPosts(OutputStream outputStream) throws IOException {
+        // the cursor needs its connection until the last row is read
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Cursor<ArchivedPost> cursor = postMapper.findAllForExport();
+                     SequenceWriter writer = objectMapper.writerFor(ArchivedPost.class)
+                             .withRootValueSeparator("\n")
+                             .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                             .writeValues(outputStream)) {
+                    for (ArchivedPost post : cursor) {
+                        writer.write(post);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        outputStream.write('\n');
+    }
+
+    /**
+     * save the posts read from the stream as the current user. each batch is written in its own transaction
+     * with jdbc batching, so on a bad line the batches before it stay saved and the result says where it stopped
+     *
+     * @param inputStream newline delimited ArchivedPost json
+     * @return number of posts saved and throughput
+     */
+    public ImportResult importPosts(InputStream inputStream) {
+        UserBean user = currentUserService.getCurrentUser();
+        long start = System.nanoTime();
+        int imported = 0;
+        String error = null;
+
+        List<Post> batch = new ArrayList<>(batchSize);
+        List<Set<String>> batchTagNames = new ArrayList<>(batchSize);
+        int line = 0;
+        try {
+            try (MappingIterator<ArchivedPost> iterator = objectMapper.readerFor(ArchivedPost.class).readValues(inputStream)) {
+                while (iterator.hasNextValue()) {
+                    line++;
+                    ArchivedPost entry = iterator.nextValue();
+                    String title = entry.getTitle() == null ? "" : entry.getTitle().trim();
+                    String content = entry.getContent() == null ? "" : entry.getContent().trim();
+                    if (title.isEmpty() || content.isEmpty() || title.length() > TITLE_MAX_LENGTH) {
+                        error = "Line " + line + ": title (at most " + TITLE_MAX_LENGTH + " characters) and content are required";
+                        break;
+                    }
+                    if (content.getBytes(StandardCharsets.UTF_8).length > CONTENT_MAX_BYTES) {
+                        error = "Line " + line + ": content is longer than " + CONTENT_MAX_BYTES + " bytes";
+                        break;
+                    }
+
+                    Post post = new Post();
+                    post.setTitle(title);
+                    post.setContent(content);
+                    PostService.summarize(post);
+                    post.setUser(user);
+                    Date now = new Date();
+                    post.setCreatedAt(entry.getCreatedAt() != null ? entry.getCreatedAt() : now);
+                    post.setUpdatedAt(entry.getUpdatedAt() != null ? entry.getUpdatedAt() : post.getCreatedAt());
+                    batch.add(post);
+                    batchTagNames.add(parseTagNames(entry.getTags()));
+
+                    if (batch.size() == batchSize) {
+                        imported += insertBatch(batch, batchTagNames);
+                        batch.clear();
+                        batchTagNames.clear();
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                error = "Line " + (line + 1) + ": " + e.getOriginalMessage();
+            } catch (IOException e) {
+                error = "Failed to read request: " + e.getMessage();
+            }
+            if (!batch.isEmpty() && error == null) {
+                imported += insertBatch(batch, batchTagNames);
+            }
+        } finally {
+            if (imported > 0) {
+                // also when a later batch failed, the ones before it are committed.
+                // one reload instead of a post count update per post
+                tagService.refresh();
+                eventPublisher.publishEvent(new PostChangedEvent(0));
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new ImportResult(imported, millis, millis == 0 ? imported : imported * 1000.0 / millis, error);
+    }
+
+    /**
+     * insert a batch of posts and their tags with a fixed number of round trips: one query for the existing tags,
+     * one jdbc batch for the missing tags, one for the posts and one insert for all post_tag rows
+     */
+    private int insertBatch(List<Post> posts, List<Set<String>> tagNames) {
+        List<PostTag> postTags = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            PostMapper batchPostMapper = batchSqlSessionTemplate.getMapper(PostMapper.class);
+            TagMapper batchTagMapper = batchSqlSessionTemplate.getMapper(TagMapper.class);
+
+            Set<String> allTagNames = new HashSet<>();
+            tagNames.forEach(allTagNames::addAll);
+            // keyed like the database compares names, so e.g. cafe and café are one tag and one post_tag row
+            Map<String, Tag> tagsByKey = new HashMap<>();
+            if (!allTagNames.isEmpty()) {
+                for (Tag tag : batchTagMapper.findByNames(allTagNames)) {
+                    tagsByKey.putIfAbsent(TagService.nameKey(tag.getName()), tag);
+                }
+                for (String tagName : allTagNames) {
+                    String key = TagService.nameKey(tagName);
+                    if (!tagsByKey.containsKey(key)) {
+                        // one row per statement, the batch executor can't set the ids of a multi-row insert
+                        Tag tag = new Tag();
+                        tag.setName(tagName);
+                        batchTagMapper.insert(tag);
+                        tagsByKey.put(key, tag);
+                    }
+                }
+            }
+
+            for (Post post : posts) {
+                batchPostMapper.insert(post);
+            }
+            // run the batches, generated ids are set on the new tags and the posts
+            batchSqlSessionTemplate.flushStatements();
+
+            for (int i = 0; i < posts.size(); i++) {
+                Set<String> keys = new HashSet<>();
+                for (String tagName : tagNames.get(i)) {
+                    String key = TagService.nameKey(tagName);
+                    if (keys.add(key)) {
+                        PostTag postTag = new PostTag();
+                        postTag.setPostId(posts.get(i).getId());
+                        postTag.setTag(tagsByKey.get(key));
+                        postTags.add(postTag);
+                    }
+                }
+            }
+            if (!postTags.isEmpty()) {
+                batchPostMapper.insertAllPostTags(postTags);
+            }
+        });
+
+        postSearchService.indexAll(posts);
+        postTagIndexService.addAll(postTags);
+        return posts.size();
+    }
+
+    private static Set<String> parseTagNames(String tags) {
+        if (tags == null) {
+            return Set.of();
+        }
+        Set<String> tagNames = new LinkedHashSet<>(Arrays.asList(tags.trim().toLowerCase().split(" "))); // remove duplicate
+        tagNames.remove(""); // eliminate empty string
+        return tagNames;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.project.blog.service;
+
+import com.project.blog.exception.StorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * deletes stored images in the background once the transaction that stopped using them has ended,
+ * so requests don't wait on the file system and a rolled back write never loses its file.
+ * the storage sweep removes anything missed here, e.g. deletions queued when the application stopped
+ */
+@Service
+public class StorageCleanupService {
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final StorageService storageService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final TaskExecutor taskExecutor;
+
+    @Autowired
+    public StorageCleanupService(StorageService storageService, ImageDerivativeService imageDerivativeService,
+                                 @Qualifier("applicationTaskExecutor") TaskExecutor taskExecutor) {
+        this.storageService = storageService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * delete an image and its derivatives once the current transaction commits
+     *
+     * @param imageName stored image name
+     */
+    public void deleteAfterCommit(String imageName) {
+        deleteAfterCompletion(imageName, TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    /**
+     * delete an image and its derivatives if the current transaction rolls back
+     *
+     * @param imageName stored image name
+     */
+    public void deleteAfterRollback(String imageName) {
+        deleteAfterCompletion(imageName, TransactionSynchronization.STATUS_ROLLED_BACK);
+    }
+
+    private void deleteAfterCompletion(String imageName, int status) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // no transaction, counts as committed
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                delete(imageName);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int completionStatus) {
+                if (completionStatus == status) {
+                    delete(imageName);
+                }
+            }
+        });
+    }
+
+    private void delete(String imageName) {
+        taskExecutor.execute(() -> {
+            try {
+                storageService.delete(imageName);
+                imageDerivativeService.delete(imageName);
+            } catch (StorageException e) {
+                // the storage sweep will retry
+                logger.warn("Failed to delete {}", imageName, e);
+            }
+        });
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.project.blog.service;
 
+import com.project.blog.pojo.FileMetadata;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -15,5 +16,7 @@ public interface StorageService {
 
     Resource loadAsResource(String filename);
 
+    FileMetadata loadMetadata(String filename);
+
     void delete(String filename);
 }
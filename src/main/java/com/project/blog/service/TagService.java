@@ -4,21 +4,109 @@ import com.project.blog.mapper.TagMapper;
 import com.project.blog.pojo.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
 
 @Service
 public class TagService {
 
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
     private final TagMapper tagMapper;
 
+    private volatile TagSnapshot snapshot; // dropped on every change and reloaded as a whole, never modified
+    // not synchronized: a virtual thread blocked on the database inside a monitor would pin its carrier thread
+    private final Lock lock = new ReentrantLock();
+
     @Autowired
     public TagService(TagMapper tagMapper) {
         this.tagMapper = tagMapper;
     }
 
     public List<Tag> getTags(){
-        return tagMapper.findAll();
+        return getTagSnapshot().tags();
+    }
+
+    /**
+     * get all tags with their post counts, loaded from the database on first use after a change
+     *
+     * @return current snapshot
+     */
+    public TagSnapshot getTagSnapshot() {
+        TagSnapshot current = snapshot;
+        if (current == null) {
+            lock.lock();
+            try {
+                current = snapshot;
+                if (current == null) {
+                    current = createSnapshot(tagMapper.findAllWithPostCount());
+                    snapshot = current;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return current;
+    }
+
+    /**
+     * reload all tags from the database
+     */
+    public void refresh() {
+        lock.lock();
+        try {
+            snapshot = createSnapshot(tagMapper.findAllWithPostCount());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * drop the snapshot after a change of post tags was committed, the next read loads the current counts.
+     * patching the counts instead would count the change twice if a read loaded the snapshot between the commit and this call.
+     * takes the lock, so a load still running with the counts from before the commit is dropped as well
+     */
+    public void invalidate() {
+        lock.lock();
+        try {
+            snapshot = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * key that is equal for names the database takes for the same tag, the name column compares
+     * case and accent insensitively, e.g. Java, java and jáva are one tag
+     *
+     * @param name tag name
+     * @return lowercase name without accents
+     */
+    public static String nameKey(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static TagSnapshot createSnapshot(List<Tag> tags) {
+        StringBuilder content = new StringBuilder();
+        for (Tag tag : tags) {
+            content.append(tag.getId()).append(':').append(tag.getName()).append(':').append(tag.getPostCount()).append('\n');
+        }
+        // weak, the response may be sent gzipped and tomcat doesn't compress responses with a strong etag
+        String etag = "W/\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        return new TagSnapshot(Collections.unmodifiableList(tags), etag);
+    }
+
+    /**
+     * immutable list of tags with post counts and the etag of that list
+     */
+    public record TagSnapshot(List<Tag> tags, String etag) {
     }
 
 }
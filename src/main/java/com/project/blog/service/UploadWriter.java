@@ -0,0 +1,85 @@
+package com.project.blog.service;
+
+import com.project.blog.exception.StorageException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * copies an upload to disk through one fixed buffer, checking its type on the first chunk
+ * and hashing it on the way
+ */
+final class UploadWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024; // per upload, whatever the file size
+
+    private UploadWriter() {
+    }
+
+    /**
+     * write an image upload to a new file, the file is removed if anything goes wrong
+     *
+     * @param file        upload
+     * @param target      file to create
+     * @param maxFileSize size in bytes above which the copy is aborted
+     * @return detected type and hash of the written file
+     * @throws StorageException if the upload isn't an accepted image or is too large
+     */
+    static WrittenUpload write(MultipartFile file, Path target, long maxFileSize) throws IOException {
+        // hashed as it is read, the one copy to disk is the only pass over the content
+        MessageDigest digest = sha256();
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            // the first chunk decides the type, the client's file name and content type aren't trusted
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int headerLength = inputStream.readNBytes(buffer, 0, ImageType.HEADER_SIZE);
+            ImageType type = ImageType.detect(buffer, headerLength);
+            if (type == null) {
+                throw new StorageException("Failed to store file of unsupported type.");
+            }
+
+            long size = headerLength;
+            try (OutputStream outputStream = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW)) {
+                outputStream.write(buffer, 0, headerLength);
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxFileSize) {
+                        throw new StorageException("Failed to store file larger than " + maxFileSize + " bytes.");
+                    }
+                    outputStream.write(buffer, 0, read);
+                }
+            } catch (IOException | StorageException e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+            return new WrittenUpload(type, HexFormat.of().formatHex(digest.digest()), size);
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform supports sha-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param type   detected image type
+     * @param sha256 hex encoded sha-256 of the content
+     * @param size   size in bytes
+     */
+    record WrittenUpload(ImageType type, String sha256, long size) {
+    }
+
+}
@@ -1,11 +1,12 @@
 package com.project.blog.service;
 
+import com.project.blog.cache.LruCache;
 import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.CustomUserDetails;
 import com.project.blog.pojo.UserBean;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -15,15 +16,29 @@ public class UserService {
 
     private final UserMapper userMapper;
     private final BCryptPasswordEncoder passwordEncoder;
+    private final PostService postService;
+    private final CurrentUserService currentUserService;
+    private final LruCache<Integer, UserBean> userCache; // users by id
 
     @Autowired
-    public UserService(UserMapper userMapper, BCryptPasswordEncoder passwordEncoder) {
+    public UserService(UserMapper userMapper, BCryptPasswordEncoder passwordEncoder, PostService postService,
+                       CurrentUserService currentUserService, LruCache<Integer, UserBean> userCache) {
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
+        this.postService = postService;
+        this.currentUserService = currentUserService;
+        this.userCache = userCache;
     }
 
+    /**
+     * get a user from the cache, loading it from the database on a miss.
+     * the returned user is shared, don't modify it
+     *
+     * @param id user id
+     * @return user, null if it doesn't exist
+     */
     public UserBean getUserById(int id) {
-        return userMapper.findById(id);
+        return userCache.getOrLoad(id, userMapper::findById);
     }
 
     public UserBean getUserByUsername(String username) {
@@ -50,10 +65,11 @@ public class UserService {
             return false;
         }
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        User userDetail = (User) authentication.getPrincipal();
+        // sessions from before CustomUserDetails hold a principal without the id, it is looked up for them
+        UserBean currentUser = currentUserService.getCurrentUser();
 
         // create a new User object with the updated username
-        User newUserDetail = new User(user.getUsername(), "", userDetail.getAuthorities());
+        CustomUserDetails newUserDetail = new CustomUserDetails(currentUser.getId(), user.getUsername(), "", authentication.getAuthorities());
 
         // create a new authentication token with the new User object
         Authentication newAuthentication = new UsernamePasswordAuthenticationToken(newUserDetail, null, newUserDetail.getAuthorities());
@@ -61,7 +77,11 @@ public class UserService {
         // set the new authentication token in the SecurityContext
         SecurityContextHolder.getContext().setAuthentication(newAuthentication);
 
-        return userMapper.updateUsername(user) > 0;
+        boolean result = userMapper.updateUsername(user) > 0;
+        userCache.invalidate(user.getId());
+        // cached posts embed the author's username
+        postService.evictCachedPosts();
+        return result;
     }
 
     public int updatePassword(UserBean user) {
@@ -78,7 +98,9 @@ public class UserService {
         }
         String hashedPassword = passwordEncoder.encode(user.getPassword());
         user.setPassword(hashedPassword);
-        return userMapper.updatePassword(user) > 0 ? 0 : -1;
+        boolean result = userMapper.updatePassword(user) > 0;
+        userCache.invalidate(user.getId());
+        return result ? 0 : -1;
     }
 
     private boolean isUsernameExists(String username) {
@@ -0,0 +1,32 @@
+-- merge duplicate tag names into the tag with the lowest id before making the name unique
+UPDATE post_tag pt
+    JOIN tag t ON pt.tag_id = t.id
+    JOIN (SELECT name, MIN(id) AS id FROM tag GROUP BY name) kept ON kept.name = t.name
+SET pt.tag_id = kept.id
+WHERE t.id <> kept.id;
+
+DELETE t FROM tag t
+    JOIN (SELECT name, MIN(id) AS id FROM tag GROUP BY name) kept ON kept.name = t.name
+WHERE t.id <> kept.id;
+
+ALTER TABLE tag ADD UNIQUE INDEX uk_tag_name (name);
+
+ALTER TABLE user ADD UNIQUE INDEX uk_user_username (username);
+
+-- rebuild post_tag with a primary key, dropping duplicate rows
+CREATE TABLE post_tag_new (
+    post_id INT NOT NULL,
+    tag_id INT NOT NULL,
+    PRIMARY KEY (post_id, tag_id),
+    INDEX idx_post_tag_tag_id (tag_id),
+    FOREIGN KEY (post_id) REFERENCES post(id),
+    FOREIGN KEY (tag_id) REFERENCES tag(id)
+);
+
+INSERT IGNORE INTO post_tag_new (post_id, tag_id) SELECT post_id, tag_id FROM post_tag;
+
+DROP TABLE post_tag;
+
+RENAME TABLE post_tag_new TO post_tag;
+
+ALTER TABLE post ADD INDEX idx_post_created_at (created_at);
@@ -0,0 +1,5 @@
+-- preview shown in post lists, filled in by the application for existing posts
+ALTER TABLE post
+    ADD COLUMN excerpt VARCHAR(255),
+    ADD COLUMN word_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN read_time INT NOT NULL DEFAULT 0;
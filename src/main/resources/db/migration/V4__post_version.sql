@@ -0,0 +1,3 @@
+-- incremented by every update of a post, an update only applies to the version it was based on
+ALTER TABLE post
+    ADD COLUMN version INT NOT NULL DEFAULT 0;
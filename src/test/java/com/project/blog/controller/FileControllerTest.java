@@ -0,0 +1,99 @@
+package com.project.blog.controller;
+
+import com.project.blog.exception.StorageFileNotFoundException;
+import com.project.blog.pojo.FileMetadata;
+import com.project.blog.service.ImageDerivativeService;
+import com.project.blog.service.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * conditional and range requests for uploaded files, against a stubbed storage so no database is needed
+ */
+class FileControllerTest {
+
+    private static final String FILENAME = "image.png";
+    private static final String CONTENT = "0123456789abcdefghij";
+    private static final String ETAG = "\"abc123\"";
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    private Path dir;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = dir.resolve(FILENAME);
+        Files.writeString(file, CONTENT, StandardCharsets.US_ASCII);
+
+        StorageService storageService = mock(StorageService.class);
+        when(storageService.loadMetadata(FILENAME))
+                .thenReturn(new FileMetadata(file, CONTENT.length(), LAST_MODIFIED, "abc123", MediaType.IMAGE_PNG));
+        when(storageService.loadMetadata("missing.png")).thenThrow(new StorageFileNotFoundException("Could not read file: missing.png"));
+        when(storageService.loadAsResource(FILENAME)).thenReturn(new FileSystemResource(file));
+
+        FileController fileController = new FileController(storageService, mock(ImageDerivativeService.class), new SimpleMeterRegistry());
+        mockMvc = MockMvcBuilders.standaloneSetup(fileController).build();
+    }
+
+    @Test
+    void servesTheFile() throws Exception {
+        mockMvc.perform(get("/api/files/" + FILENAME))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() throws Exception {
+        mockMvc.perform(get("/api/files/" + FILENAME).header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void unmodifiedSinceIsNotModified() throws Exception {
+        mockMvc.perform(get("/api/files/" + FILENAME).header(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void modifiedSinceIsServed() throws Exception {
+        mockMvc.perform(get("/api/files/" + FILENAME).header(HttpHeaders.IF_MODIFIED_SINCE, LAST_MODIFIED - 60_000))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void rangeIsPartialContent() throws Exception {
+        mockMvc.perform(get("/api/files/" + FILENAME).header(HttpHeaders.RANGE, "bytes=5-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-9/" + CONTENT.length()))
+                .andExpect(content().string(CONTENT.substring(5, 10)));
+    }
+
+    @Test
+    void missingFileIsNotFound() throws Exception {
+        mockMvc.perform(get("/api/files/missing.png"))
+                .andExpect(status().isNotFound());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.project.blog.mapper;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * the list and tag queries read through the indexes added in V2__indexes.sql, checked with EXPLAIN
+ * on the statements the mappers actually run against the H2 copy of the schema
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class IndexUsageTest {
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void postsOfATagAreFoundThroughTheTagIdIndex() {
+        String plan = explain("com.project.blog.mapper.PostMapper.findAll", Map.of("search", "", "tagId", 1));
+        assertIndex(plan, "idx_post_tag_tag_id: tag_id = ?1");
+
+        assertIndex(explain("com.project.blog.mapper.PostMapper.findPostIdsByTagId", 1), "idx_post_tag_tag_id: tag_id = ?1");
+    }
+
+    @Test
+    void tagsOfPostsAreFoundThroughThePostTagPrimaryKey() {
+        assertIndex(explain("com.project.blog.mapper.TagMapper.findByPostIds", Map.of("postIds", List.of(1, 2))), "PRIMARY_KEY_\\w+: post_id IN");
+
+        assertIndex(explain("com.project.blog.mapper.PostMapper.findPostTagIdsByPostId", 1), "PRIMARY_KEY_\\w+: post_id = ?1");
+    }
+
+    @Test
+    void tagsAndUsersAreFoundByNameThroughTheUniqueIndexes() {
+        assertIndex(explain("com.project.blog.mapper.TagMapper.findByNames", Map.of("names", List.of("a", "b"))), "uk_tag_name\\w*: name IN");
+
+        assertIndex(explain("com.project.blog.mapper.UserMapper.findByUsername", "a"), "uk_user_username\\w*: username = ?1");
+    }
+
+    /**
+     * @param index pattern of the index name and condition H2 writes as a comment in the plan, ? is literal
+     */
+    private static void assertIndex(String plan, String index) {
+        Pattern pattern = Pattern.compile("/\\* public\\." + index.replace("?", "\\?"));
+        assertTrue(pattern.matcher(plan).find(), () -> "expected " + index + " in\n" + plan);
+    }
+
+    /**
+     * @return the plan H2 chooses for a mapper statement with these parameters
+     */
+    private String explain(String statementId, Object parameter) {
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        MappedStatement statement = configuration.getMappedStatement(statementId);
+        BoundSql boundSql = statement.getBoundSql(parameter);
+        List<Object> args = new ArrayList<>();
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            String property = mapping.getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                args.add(boundSql.getAdditionalParameter(property));
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+                args.add(parameter);
+            } else {
+                MetaObject metaObject = configuration.newMetaObject(parameter);
+                args.add(metaObject.getValue(property));
+            }
+        }
+        return jdbcTemplate.queryForObject("EXPLAIN " + boundSql.getSql(), String.class, args.toArray());
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.project.blog.service;
+
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.Post;
+import com.project.blog.pojo.Tag;
+import com.project.blog.pojo.UserBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class PostServiceConcurrencyTest {
+
+    private static final int UPDATERS = 16;
+
+    private final MultipartFile noImage = new MockMultipartFile("image", new byte[0]);
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+    private int postId;
+
+    private final List<Integer> otherPostIds = new ArrayList<>();
+
+    @BeforeEach
+    void createPost() {
+        UserBean user = new UserBean();
+        user.setUsername("concurrency" + System.nanoTime());
+        user.setPassword("");
+        userMapper.insert(user);
+        userId = user.getId();
+        postId = insertPost();
+    }
+
+    @AfterEach
+    void deletePost() {
+        postService.deletePost(postId);
+        for (int otherPostId : otherPostIds) {
+            postService.deletePost(otherPostId);
+        }
+        jdbcTemplate.update("DELETE FROM user WHERE id=?", userId);
+    }
+
+    @Test
+    void updatesOfTheSameVersionHaveOneWinner() throws Exception {
+        List<Boolean> results = runUpdaters(i -> {
+            try {
+                return postService.updatePost(postId, 0, "title " + i, "content " + i, noImage, "shared tag" + i);
+            } catch (OptimisticLockingFailureException e) {
+                return false;
+            }
+        });
+
+        assertEquals(1, Collections.frequency(results, true));
+        Post post = postMapper.findById(postId);
+        assertEquals(1, post.getVersion());
+        // the tags are the winner's, not a mix of several updates
+        String winner = post.getTitle().substring("title ".length());
+        assertEquals("content " + winner, post.getContent());
+        assertEquals(Set.of("shared", "tag" + winner), tagNames(post));
+    }
+
+    @Test
+    void retriedUpdatesAreNotLost() throws Exception {
+        List<Boolean> results = runUpdaters(i -> {
+            while (true) {
+                try {
+                    return postService.updatePost(postId, PostService.ANY_VERSION, "title " + i, "content " + i, noImage, "tag" + i);
+                } catch (OptimisticLockingFailureException e) {
+                    // read the new version and try again
+                }
+            }
+        });
+
+        assertEquals(UPDATERS, Collections.frequency(results, true));
+        Post post = postMapper.findById(postId);
+        assertEquals(UPDATERS, post.getVersion());
+        assertEquals(Set.of("tag" + post.getTitle().substring("title ".length())), tagNames(post));
+    }
+
+    @Test
+    void savesCreatingTheSameTagAllSucceed() throws Exception {
+        List<Integer> postIds = new ArrayList<>();
+        for (int i = 0; i < UPDATERS; i++) {
+            postIds.add(insertPost());
+        }
+        otherPostIds.addAll(postIds);
+        String tagName = "new" + System.nanoTime();
+
+        List<Boolean> results = runUpdaters(i -> postService.updatePost(postIds.get(i), PostService.ANY_VERSION, "title", "content", noImage, tagName));
+
+        assertEquals(UPDATERS, Collections.frequency(results, true));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tag WHERE name=?", Integer.class, tagName));
+        for (int otherPostId : postIds) {
+            assertEquals(Set.of(tagName), tagNames(postMapper.findById(otherPostId)));
+        }
+    }
+
+    private int insertPost() {
+        UserBean user = new UserBean();
+        user.setId(userId);
+        Post post = new Post();
+        post.setTitle("title");
+        post.setContent("content");
+        post.setUser(user);
+        post.setCreatedAt(new Date());
+        post.setUpdatedAt(post.getCreatedAt());
+        postMapper.insert(post);
+        return post.getId();
+    }
+
+    /**
+     * run an update from each of UPDATERS threads, released at the same time
+     */
+    private List<Boolean> runUpdaters(Updater updater) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(UPDATERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < UPDATERS; i++) {
+                int updaterId = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return updater.update(updaterId);
+                }));
+            }
+            start.countDown();
+
+            List<Boolean> results = new ArrayList<>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Set<String> tagNames(Post post) {
+        Set<String> names = new HashSet<>();
+        for (Tag tag : post.getTags()) {
+            names.add(tag.getName());
+        }
+        return names;
+    }
+
+    private interface Updater {
+        boolean update(int updaterId);
+    }
+
+}
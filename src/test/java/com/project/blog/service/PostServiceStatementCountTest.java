@@ -0,0 +1,157 @@
+package com.project.blog.service;
+
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.UserBean;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * the number of sql statements a request runs must not grow with the amount of data it returns or writes
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PostServiceStatementCountTest {
+
+    private static final int POSTS = 60;
+    private static final int USERS = 10;
+    private static final int TAGS = 20;
+    private static final int TAGS_PER_POST = 3;
+
+    private final MultipartFile noImage = new MockMultipartFile("image", new byte[0]);
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @BeforeEach
+    void seed() {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM post", Integer.class) > 0) {
+            return;
+        }
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            UserBean user = new UserBean();
+            user.setUsername("author" + i);
+            user.setPassword("");
+            userMapper.insert(user);
+            userIds.add(user.getId());
+        }
+        for (int i = 0; i < TAGS; i++) {
+            jdbcTemplate.update("INSERT INTO tag (name) VALUES (?)", "tag" + i);
+        }
+        List<Integer> tagIds = jdbcTemplate.queryForList("SELECT id FROM tag ORDER BY id", Integer.class);
+        for (int i = 0; i < POSTS; i++) {
+            jdbcTemplate.update("INSERT INTO post (title, content, created_at, updated_at, user_id) VALUES (?, ?, NOW(), NOW(), ?)",
+                    "title " + i, "content " + i, userIds.get(i % USERS));
+        }
+        List<Integer> postIds = jdbcTemplate.queryForList("SELECT id FROM post ORDER BY id", Integer.class);
+        for (int i = 0; i < POSTS; i++) {
+            for (int j = 0; j < TAGS_PER_POST; j++) {
+                jdbcTemplate.update("INSERT INTO post_tag (post_id, tag_id) VALUES (?, ?)", postIds.get(i), tagIds.get((i + j) % TAGS));
+            }
+        }
+    }
+
+    @Test
+    void getPostsRunsTheSameStatementsForAnyPageSize() {
+        List<Integer> counts = new ArrayList<>();
+        for (int pageSize : new int[]{4, 20, 50}) {
+            statementCounter.reset();
+            assertEquals(pageSize, postService.getPosts("", 0, 1, pageSize).getList().size());
+            counts.add(statementCounter.count());
+        }
+        // count, page, authors and tags
+        assertEquals(List.of(4, 4, 4), counts);
+    }
+
+    @Test
+    void savingTagsRunsTheSameStatementsForAnyNumberOfTags() {
+        List<Integer> counts = new ArrayList<>();
+        for (int tagCount : new int[]{1, 10, 50}) {
+            int postId = postService.getPosts("", 0, 1, 1).getList().get(0).getId();
+            // every tag new, then every tag replaced by a new one
+            String prefix = "count" + tagCount + "x";
+            statementCounter.reset();
+            postService.updatePost(postId, PostService.ANY_VERSION, "title", "content", noImage, newTags(prefix + "a", tagCount));
+            int added = statementCounter.count();
+            statementCounter.reset();
+            postService.updatePost(postId, PostService.ANY_VERSION, "title", "content", noImage, newTags(prefix + "b", tagCount));
+            counts.add(added);
+            counts.add(statementCounter.count());
+            assertEquals(tagCount, postMapper.findById(postId).getTags().size());
+        }
+        assertEquals(counts.subList(0, 2), counts.subList(2, 4));
+        assertEquals(counts.subList(0, 2), counts.subList(4, 6));
+    }
+
+    private static String newTags(String prefix, int count) {
+        StringBuilder tags = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            tags.append(prefix).append(i).append(' ');
+        }
+        return tags.toString();
+    }
+
+    /**
+     * counts the jdbc statements prepared by mybatis
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    static class StatementCounter implements Interceptor {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            count.incrementAndGet();
+            return invocation.proceed();
+        }
+
+        void reset() {
+            count.set(0);
+        }
+
+        int count() {
+            return count.get();
+        }
+
+    }
+
+    @TestConfiguration
+    static class StatementCounterConfig {
+
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.project.blog.service;
+
+import com.project.blog.mapper.PostMapper;
+import com.project.blog.mapper.UserMapper;
+import com.project.blog.pojo.Post;
+import com.project.blog.pojo.Tag;
+import com.project.blog.pojo.UserBean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * tag names the database compares as equal, the H2 schema uses an accent and case insensitive collation like mysql
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PostServiceTagsTest {
+
+    private final MultipartFile noImage = new MockMultipartFile("image", new byte[0]);
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private int userId;
+    private int postId;
+
+    @BeforeEach
+    void createPost() {
+        UserBean user = new UserBean();
+        user.setUsername("tags" + System.nanoTime());
+        user.setPassword("");
+        userMapper.insert(user);
+        userId = user.getId();
+
+        Post post = new Post();
+        post.setTitle("title");
+        post.setContent("content");
+        post.setUser(user);
+        post.setCreatedAt(new Date());
+        post.setUpdatedAt(post.getCreatedAt());
+        postMapper.insert(post);
+        postId = post.getId();
+    }
+
+    @AfterEach
+    void deletePost() {
+        postService.deletePost(postId);
+        jdbcTemplate.update("DELETE FROM user WHERE id=?", userId);
+    }
+
+    @Test
+    void newNamesTheDatabaseTakesForOneTagAreOneTag() {
+        postService.updatePost(postId, PostService.ANY_VERSION, "title", "content", noImage, "cafe caf\u00e9");
+
+        List<Tag> tags = postMapper.findById(postId).getTags();
+        assertEquals(1, tags.size());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tag WHERE name='cafe'", Integer.class));
+    }
+
+    @Test
+    void namesTheDatabaseTakesForAnExistingTagAreThatTag() {
+        jdbcTemplate.update("INSERT INTO tag (name) VALUES ('naive')");
+        int tagId = jdbcTemplate.queryForObject("SELECT id FROM tag WHERE name='naive'", Integer.class);
+
+        postService.updatePost(postId, PostService.ANY_VERSION, "title", "content", noImage, "naive na\u00efve");
+
+        List<Tag> tags = postMapper.findById(postId).getTags();
+        assertEquals(1, tags.size());
+        assertEquals(tagId, tags.get(0).getId());
+    }
+
+}
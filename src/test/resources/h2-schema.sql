@@ -0,0 +1,45 @@
+-- the schema after every migration in db/migration, written for H2
+-- text compares case and accent insensitively, like mysql's default utf8mb4_0900_ai_ci collation
+SET COLLATION ENGLISH STRENGTH PRIMARY;
+
+CREATE TABLE user (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_user_username UNIQUE (username)
+);
+
+CREATE TABLE post (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    content TEXT NOT NULL,
+    image VARCHAR(255),
+    excerpt VARCHAR(255),
+    word_count INT NOT NULL DEFAULT 0,
+    read_time INT NOT NULL DEFAULT 0,
+    version INT NOT NULL DEFAULT 0,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+    user_id INT NOT NULL,
+    FOREIGN KEY (user_id) REFERENCES user(id)
+);
+
+CREATE INDEX idx_post_created_at ON post (created_at);
+
+CREATE TABLE tag (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_tag_name UNIQUE (name)
+);
+
+CREATE TABLE post_tag (
+    post_id INT NOT NULL,
+    tag_id INT NOT NULL,
+    PRIMARY KEY (post_id, tag_id)
+);
+
+-- before the foreign keys so they use it, as in mysql, instead of an index of their own
+CREATE INDEX idx_post_tag_tag_id ON post_tag (tag_id);
+
+ALTER TABLE post_tag ADD FOREIGN KEY (post_id) REFERENCES post(id);
+ALTER TABLE post_tag ADD FOREIGN KEY (tag_id) REFERENCES tag(id);